@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 全局{@link Counter}的争用：很多控制器共用一个计数器，每个线程轮流使用其中的若干个。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class CounterBench {
+    @Param({"256"})
+    int throttles;
+    @Param({"4", "64"})
+    int maxReqCount;
+
+    private final AtomicInteger seq = new AtomicInteger();
+    private final AtomicInteger threads = new AtomicInteger();
+    private Counter counter;
+    private ThrottleInt<Integer>[] array;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setup() {
+        counter = new Counter(maxReqCount);
+        array = new ThrottleInt[throttles];
+        for (int i = 0; i < throttles; i++) {
+            array[i] = new ThrottleInt<>(counter, 8, true, new ThrottleInt.Executor<Integer>() {
+                @Override
+                protected void execAsync(int from, int to, Integer tag, Runnable onDone) {
+                    onDone.run();
+                }
+
+                @Override
+                protected void cancel(int from, int to, Integer tag) {
+                }
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (ThrottleInt<Integer> t : array) t.destroy(true);
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        int index;
+
+        @Setup
+        public void setup(CounterBench bench) {
+            index = bench.threads.getAndIncrement() % bench.throttles;
+        }
+
+        ThrottleInt<Integer> next(CounterBench bench) {
+            if (++index == bench.throttles) index = 0;
+            return bench.array[index];
+        }
+    }
+
+    /**
+     * 仅计数器本身：领取名额，领到了就马上退回。
+     */
+    @Benchmark
+    public boolean holdDrop(Worker w) {
+        final AbsThrottle t = w.next(this);
+        if (counter.hold(t)) {
+            counter.drop(t);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 经过控制器：向共用计数器的各控制器输入并派发。
+     */
+    @Benchmark
+    public void put(Worker w) {
+        w.next(this).put(seq.getAndIncrement(), null, false);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AbsSorter}的基本操作。分拣器中预先放入<code>size</code>个互不相连的范围<code>[4i, 4i + 1]</code>,
+ * 每次操作之后都恢复原状，以保证规模不变。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SorterBench {
+    @Param({"10", "1000", "100000"})
+    int size;
+    @Param({"true", "false"})
+    boolean minFirst;
+
+    private SorterR<IntD> sorter;
+    private final List<Range<IntD>> out = new ArrayList<>();
+    private int i;
+
+    @Setup
+    public void setup() {
+        sorter = new SorterR<>();
+        for (int k = 0; k < size; k++) sorter.put(IntD.of(4 * k), IntD.of(4 * k + 1));
+    }
+
+    private int next() {
+        if (++i >= size - 1) i = 0;
+        return 4 * i;
+    }
+
+    /**
+     * 填上两个范围之间的空隙（与两边合并），再挖掉（拆开）。
+     */
+    @Benchmark
+    public boolean putDrop() {
+        final int n = next();
+        sorter.put(IntD.of(n + 2), IntD.of(n + 3));
+        return sorter.drop(IntD.of(n + 2), IntD.of(n + 3));
+    }
+
+    /**
+     * 从一头取出一个范围再放回去。
+     */
+    @Benchmark
+    public Range<IntD> takeSerial() {
+        final Range<IntD> r = sorter.takeSerial(4, minFirst);
+        sorter.put(r);
+        return r;
+    }
+
+    /**
+     * 从<code>prev</code>之后（或之前）取出一个范围再放回去，需要先在索引中定位。
+     */
+    @Benchmark
+    public Range<IntD> takeSerialFrom() {
+        final Range<IntD> r = sorter.takeSerial(IntD.of(next() + 2), 4, minFirst);
+        if (r != null) sorter.put(r);
+        return r;
+    }
+
+    @Benchmark
+    public boolean contains() {
+        final int n = next();
+        return sorter.contains(IntD.of(n), IntD.of(n + 1));
+    }
+
+    /**
+     * 跨越三个范围的减法，即{@link AbsThrottle}在派发前修剪等待栈的操作。
+     */
+    @Benchmark
+    public int subtract() {
+        final int n = next();
+        out.clear();
+        sorter.subtract(new Range<>(IntD.of(n), IntD.of(n + 9)), out);
+        return out.size();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 输入到派发的吞吐量：多个生产者线程向同一个控制器{@link ThrottleInt#put(int, Object, boolean) 输入}，
+ * 任务执行者在派发时就地完成任务，因此测得的是控制器本身（排队、合并、计数、挤出局）的开销。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThrottleBench {
+    @Param({"1", "8"})
+    int tags;
+    @Param({"false", "true"})
+    boolean promised;
+
+    private final AtomicInteger seq = new AtomicInteger();
+    private final AtomicInteger threads = new AtomicInteger();
+    private ThrottleInt<Integer> throttle;
+
+    @Setup
+    public void setup() {
+        throttle = new ThrottleInt<>(new Counter(16), 8, true, new ThrottleInt.Executor<Integer>() {
+            @Override
+            protected void execAsync(int from, int to, Integer tag, Runnable onDone) {
+                onDone.run();
+            }
+
+            @Override
+            protected void cancel(int from, int to, Integer tag) {
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        throttle.destroy(true);
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        Integer tag;
+
+        @Setup
+        public void setup(ThrottleBench bench) {
+            tag = bench.threads.getAndIncrement() % bench.tags;
+        }
+    }
+
+    private void put(Producer p) {
+        throttle.put(seq.getAndIncrement(), p.tag, promised);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void put1(Producer p) {
+        put(p);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void put4(Producer p) {
+        put(p);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void put16(Producer p) {
+        put(p);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void put64(Producer p) {
+        put(p);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 泛型{@link ThrottleR}的合并与排空：唯一的名额被占住时输入一批相互重叠（含重复）、乱序的范围，它们堆积在等待栈中；
+ * 然后逐个完成任务，每次完成都会排空入队、从等待栈中取出并合并成不超过<code>limit</code>的范围再派发，直到全部执行完。
+ * 与{@link ThrottleBench}不同，这里测的是{@link Range}/{@link Discrete}经由{@link Coalescer}的路径，而不是输入的并发开销。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThrottleRBench {
+    @Param({"16", "256", "4096"})
+    int burst;
+    /**
+     * 每个输入的长度：等于步长即首尾相接，大于步长则相互重叠。
+     */
+    @Param({"4", "8"})
+    int width;
+    @Param({"false", "true"})
+    boolean promised;
+
+    private static final int STRIDE = 4, LIMIT = 64;
+
+    private final Queue<Runnable> onDones = new ArrayDeque<>();
+    private ThrottleR<IntD, Integer> throttle;
+    private Range<IntD>[] inputs;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        throttle = new ThrottleR<>(new Counter(1), LIMIT, true, new ThrottleR.Executor<IntD, Integer>() {
+            @Override
+            protected void execAsync(Range<IntD> range, Integer tag, Runnable onDone) {
+                onDones.offer(onDone);
+            }
+
+            @Override
+            protected void cancel(Range<IntD> range, Integer tag) {
+            }
+        });
+        // 每个位置输入两次，再打乱顺序，使得栈顶不总是与下一个相连。
+        inputs = new Range[burst];
+        for (int i = 0; i < burst; i++) {
+            final int from = i / 2 * STRIDE;
+            inputs[i] = new Range<>(IntD.of(from), IntD.of(from + width - 1));
+        }
+        final Random random = new Random(17);
+        for (int i = burst - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final Range<IntD> t = inputs[i];
+            inputs[i] = inputs[j];
+            inputs[j] = t;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        throttle.destroy(true);
+    }
+
+    /**
+     * @return 实际派发的次数，合并得越多越少。
+     */
+    @Benchmark
+    public int putThenDrain() {
+        final Integer tag = 0;
+        for (Range<IntD> r : inputs) throttle.put(r, tag, promised);
+        int dispatched = 0;
+        Runnable onDone;
+        while ((onDone = onDones.poll()) != null) {
+            dispatched++;
+            onDone.run();
+        }
+        return dispatched;
+    }
+}
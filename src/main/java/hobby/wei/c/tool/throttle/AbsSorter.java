@@ -17,18 +17,31 @@
 package hobby.wei.c.tool.throttle;
 
 import java.util.Comparator;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 /**
  * 离散对象分拣器(去重复、排序等)。输入数据需满足接口{@link Discrete}的基本要求。
+ * <p>
+ * 内部以区间索引存储：{@link #put(AbsR)}时即把有交集或相邻的范围合并掉，索引中的各范围互不相交且不相邻，
+ * 因此{@link #put(AbsR) put}、{@link #drop(Discrete, Discrete) drop}、{@link #contains(Discrete, Discrete)
+ * contains}及{@link #getSerial(Discrete, int, boolean) getSerial}都只需定位到相关的k个范围，即O(log n + k).
  *
  * @author Wei Chou(weichou2010@gmail.com)
  * @version 1.0, 15/08/2016
  */
 abstract class AbsSorter<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
+    private final Comparator<D> comparatorDiscrete = new Comparator<D>() {
+        @Override
+        public int compare(D left, D right) {
+            return Integer.compare(left.delta(right), 0);
+        }
+    };
     private final Comparator<R> comparatorIncrement = new Comparator<R>() {
         @Override
         public int compare(R left, R right) {
@@ -51,8 +64,10 @@ abstract class AbsSorter<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
             return Integer.compare(0, delta);
         }
     };
-    private final SortedSet<R> sortedSetInc = new TreeSet<>(comparatorIncrement);
-    private final SortedSet<R> sortedSetDec = new TreeSet<>(comparatorDecrement);
+    /**
+     * 以{@link R#from() from}为键的区间索引，各范围互不相交且不相邻。
+     */
+    private final NavigableMap<D, R> index = new TreeMap<>(comparatorDiscrete);
 
     /**
      * 输入单一离散对象。
@@ -79,7 +94,24 @@ abstract class AbsSorter<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
      * @param range
      */
     synchronized void put(R range) {
-        sortedSetInc.add(range);
+        D from = range.from(), to = range.to();
+        boolean joined = false;
+        final Map.Entry<D, R> lower = index.floorEntry(from);
+        if (lower != null && lower.getValue().to().delta(from) >= -1) { // 有交集或相邻
+            final R r = lower.getValue();
+            if (r.to().delta(to) >= 0) return; // 已包含
+            from = r.from();
+            index.remove(lower.getKey());
+            joined = true;
+        }
+        Map.Entry<D, R> higher;
+        while ((higher = index.ceilingEntry(from)) != null && higher.getValue().from().delta(to) <= 1) {
+            final R r = higher.getValue();
+            if (r.to().delta(to) > 0) to = r.to();
+            index.remove(higher.getKey());
+            joined = true;
+        }
+        index.put(from, joined ? create(from, to) : range);
     }
 
     /**
@@ -155,75 +187,47 @@ abstract class AbsSorter<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
         return getSerial$(prev == null ? null : create(prev, prev), limit, minFirst);
     }
 
-    private R getSerial$(R prev, int limit, boolean minFirst) {
-        SortedSet<R> sortedSet;
+    /**
+     * {@link #takeMore(Discrete, int, boolean) takeMore}、{@link #getSerial(Discrete, int, boolean) getSerial}等都经由
+     * 本方法，以便子类换用其它的存储，见{@link SorterIntR}.
+     */
+    synchronized R getSerial$(R prev, int limit, boolean minFirst) {
+        // 索引中的范围互不相交且不相邻，那么一个连续的范围必然只是其中一个（或其一部分），两个方向都只需定位一次。
+        // prev存在两种情况：
+        // 1. 开放给外部使用的单一Discrete元素，prev.delta() == 0;
+        // 2. 内部实现，本方法在上一次返回的结果，但不一定是range.equals(prev), 因为上一次的返回值可能是截断的结果。
+        // 不过这两种情况都可以用下面的逻辑概括而达到目的。
+        final Map.Entry<D, R> entry;
+        D from = null, to = null;
         if (minFirst) {
-            sortedSet = sortedSetInc;
-        } else {
-            synchronized (this) {
-                sortedSetDec.addAll(sortedSetInc);
+            if (prev == null) {
+                entry = index.firstEntry();
+            } else {
+                final Map.Entry<D, R> floor = index.floorEntry(prev.to());
+                if (floor != null && floor.getValue().to().delta(prev.to()) > 0) {
+                    entry = floor;
+                    from = prev.to().offset(1);
+                } else entry = index.higherEntry(prev.to());
             }
-            sortedSet = sortedSetDec;
-        }
-        R begin = null;
-        R end = null;
-        synchronized (this) {
-            for (R range : sortedSet) {
-                if (begin == null) {
-                    if (prev == null) end = begin = range;
-                    else {
-                        // prev存在两种情况：
-                        // 1. 开放给外部使用的单一Discrete元素，prev.delta() == 0;
-                        // 2. 内部实现，本方法在上一次返回的结果，但不一定是range.equals(prev), 因为上一次的返回值可能是截断的结果。
-                        // 不过这两种情况都可以用下面的逻辑概括而达到目的。
-                        if (minFirst) {
-                            if (range.from().delta(prev.to()) > 0) {
-                                end = begin = range;
-                            } else if (range.to().delta(prev.to()) > 0) {
-                                end = begin = create(prev.to().offset(1), range.to());
-                            } else continue;
-                        } else {
-                            if (range.to().delta(prev.from()) < 0) {
-                                end = begin = range;
-                            } else if (range.from().delta(prev.from()) < 0) {
-                                end = begin = create(range.from(), prev.from().offset(-1));
-                            } else continue;
-                        }
-                    }
-                }
-                if (minFirst) {
-                    if (end.to().delta(range.from()) < -1) break;
-                    if (end.to().delta(range.to()) < 0 || end == begin) {
-                        final int delta = range.to().delta(begin.from()) + 1/*包括from和to本身*/;
-                        if (delta < limit) {
-                            end = range;
-                        } else if (delta == limit) {
-                            end = range;
-                            break;
-                        } else {    // 切断
-                            end = create(range.from(), begin.from().offset(limit - 1));
-                            break;
-                        }
-                    }
-                } else {
-                    if (end.from().delta(range.to()) > 1) break;
-                    if (end.from().delta(range.from()) > 0 || end == begin) {
-                        final int delta = begin.to().delta(range.from()) + 1/*包括from和to本身*/;
-                        if (delta < limit) {
-                            end = range;
-                        } else if (delta == limit) {
-                            end = range;
-                            break;
-                        } else {    // 切断
-                            end = create(begin.to().offset(-(limit - 1)), range.to());
-                            break;
-                        }
-                    }
+        } else {
+            if (prev == null) {
+                entry = index.lastEntry();
+            } else {
+                entry = index.lowerEntry(prev.from());
+                if (entry != null && entry.getValue().to().delta(prev.from()) >= 0) {
+                    to = prev.from().offset(-1);
                 }
             }
-            sortedSetDec.clear();
         }
-        return end == begin ? begin : minFirst ? create(begin.from(), end.to()) : create(end.from(), begin.to());
+        if (entry == null) return null;
+        final R range = entry.getValue();
+        if (from == null) from = range.from();
+        if (to == null) to = range.to();
+        if (to.delta(from) + 1/*包括from和to本身*/ > limit) { // 切断
+            if (minFirst) to = from.offset(limit - 1);
+            else from = to.offset(-(limit - 1));
+        }
+        return from == range.from() && to == range.to() ? range : create(from, to);
     }
 
     boolean contains(D discrete) {
@@ -234,14 +238,58 @@ abstract class AbsSorter<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
         return contains(range.from(), range.to());
     }
 
-    boolean contains(D from, D to) {
-        R range = null;
-        while (true) {
-            range = getSerial$(range, Integer.MAX_VALUE, true);
-            if (range == null) break;
-            if (range.contains(from, to)) return true;
+    synchronized boolean contains(D from, D to) {
+        // 索引中的范围互不相邻，连续的范围必然只是其中一个。
+        final Map.Entry<D, R> floor = index.floorEntry(from);
+        return floor != null && floor.getValue().contains(from, to);
+    }
+
+    /**
+     * 是否与本分拣器中的范围有交集。
+     */
+    synchronized boolean overlap(D from, D to) {
+        final Map.Entry<D, R> floor = index.floorEntry(to);
+        return floor != null && floor.getValue().to().delta(from) >= 0;
+    }
+
+    /**
+     * 求<code>range</code>与本分拣器中的范围的交集（本分拣器不变）。
+     *
+     * @param out 交集的各部分按从小到大的顺序加入其中。
+     */
+    synchronized void intersect(R range, List<R> out) {
+        final D floor = index.floorKey(range.from());
+        for (R r : index.tailMap(floor == null ? range.from() : floor, true).values()) {
+            if (r.from().delta(range.to()) > 0) break;
+            if (r.to().delta(range.from()) < 0) continue; // 仅floor可能出现
+            if (range.contains(r)) out.add(r);
+            else if (r.contains(range)) out.add(range);
+            else out.add(create(r.from().delta(range.from()) > 0 ? r.from() : range.from(),
+                    r.to().delta(range.to()) < 0 ? r.to() : range.to()));
+        }
+    }
+
+    /**
+     * 从<code>range</code>中减去本分拣器中的所有范围（本分拣器不变）。
+     *
+     * @param out 剩余的部分按从小到大的顺序加入其中。
+     * @return 是否有交集。若无交集，<code>out</code>不变。
+     */
+    synchronized boolean subtract(R range, List<R> out) {
+        final D floor = index.floorKey(range.from());
+        D from = range.from();
+        boolean overlap = false;
+        for (R r : index.tailMap(floor == null ? from : floor, true).values()) {
+            if (r.from().delta(range.to()) > 0) break;
+            if (r.to().delta(from) < 0) continue; // 仅floor可能出现
+            if (!overlap && r.contains(range)) return true; // 对于不连续的离散对象，有交集就是包含。
+            overlap = true;
+            if (r.from().delta(from) > 0) out.add(create(from, r.from().offset(-1)));
+            if (r.to().delta(range.to()) >= 0) return true;
+            from = r.to().offset(1);
         }
-        return false;
+        if (overlap) out.add(from == range.from() ? range : create(from, range.to()));
+        return overlap;
     }
 
     boolean drop(D discrete) {
@@ -257,38 +305,31 @@ abstract class AbsSorter<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
      */
     synchronized boolean drop(D from, D to) {
         if (!hasMore()) return false;
-        final List<R> adds = new LinkedList<>();
-        final List<R> removes = new LinkedList<>();
-        for (R range : sortedSetInc) {
-            final int dfm = range.from().delta(from);
-            final int dto = range.to().delta(to);
-            if (dfm >= 0 && dto <= 0) {
-                removes.add(range);
-            } else {
-                boolean rm = true;
-                if (dfm < 0 && range.to().delta(from) >= 0) {
-                    adds.add(create(range.from(), from.offset(-1)));
-                    removes.add(range);
-                    rm = false;
-                }
-                if (dto > 0 && range.from().delta(to) <= 0) {
-                    adds.add(create(to.offset(1), range.to()));
-                    if (rm) removes.add(range);
-                }
-            }
+        final D floor = index.floorKey(from);
+        R head = null, tail = null;
+        final Iterator<R> iterator = index.tailMap(floor == null ? from : floor, true).values().iterator();
+        while (iterator.hasNext()) {
+            final R range = iterator.next();
+            if (range.from().delta(to) > 0) break;
+            if (range.to().delta(from) < 0) continue; // 仅floor可能出现
+            iterator.remove();
+            if (range.from().delta(from) < 0) head = create(range.from(), from.offset(-1));
+            if (range.to().delta(to) > 0) tail = create(to.offset(1), range.to());
         }
-        sortedSetInc.removeAll(removes);
-        sortedSetInc.addAll(adds);
+        if (head != null) index.put(head.from(), head);
+        if (tail != null) index.put(tail.from(), tail);
         return hasMore();
     }
 
     public synchronized boolean hasMore() {
-        return sortedSetInc.size() != 0;
+        return !index.isEmpty();
     }
 
     abstract R create(D from, D to);
 
     static abstract class AbsR<D extends Discrete<D>> {
+        private int hash;
+
         abstract D from();
 
         abstract D to();
@@ -358,14 +399,25 @@ abstract class AbsSorter<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
             return range.from().delta(range1.from()) == 0 && range.to().delta(range1.to()) == 0;
         }
 
+        /**
+         * 范围可直接用作{@link java.util.Map}的键（而不必用{@link #unique()}拼接字符串）。
+         */
         @Override
         public final boolean equals(Object o) {
-            return o instanceof AbsR && equals(this, (AbsR) o);
+            return o == this || o instanceof AbsR && equals(this, (AbsR) o);
         }
 
+        /**
+         * 由两端的{@link Discrete#hashCode()}求得，结果会被缓存（范围是不可变的）。
+         */
         @Override
         public final int hashCode() {
-            return from().hashCode() * 41 + to().hashCode();
+            int h = hash;
+            if (h == 0) {
+                h = from().hashCode() * 41 + to().hashCode();
+                hash = h;
+            }
+            return h;
         }
     }
 }
@@ -16,21 +16,32 @@
 
 package hobby.wei.c.tool.throttle;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import hobby.wei.c.tool.LruCache;
 
-import static scala.Predef.require;
-
 /**
  * 负载节流控制器。
  * <p>
@@ -57,11 +68,55 @@ abstract class AbsThrottle<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, T
     private final Map<TAG, Tagged<TAG, D, R>> taggedMap = new HashMap<>();
     private final AtomicBoolean pushing = new AtomicBoolean(false);
     private final AtomicBoolean request = new AtomicBoolean(false);
+    /**
+     * 有待处理任务的{@link Tagged}环，闲置的分类不在其中。
+     */
+    private final Rotation<Tagged<TAG, D, R>> rotation = new Rotation<>();
+    final Counter.Slot slot = new Counter.Slot();
     private final Counter counter;
     private final int limit;
     private final boolean minFirst;
     private final AbsExecutor<D, R, TAG> executor;
-    private Tagged<TAG, D, R> tagNull;
+    private volatile Weigher<TAG> weigher;
+    private volatile Evictor<TAG> evictor;
+    /**
+     * 执行完成的范围在多长时间(纳秒)内无需再次执行，见{@link #setFreshness(long, TimeUnit)}.
+     */
+    private volatile long freshness;
+    /**
+     * 等待中的非promised输入在多长时间(纳秒)之后过期，见{@link #setExpiry(long, TimeUnit)}.
+     */
+    private volatile long expiry;
+    /**
+     * 合并窗口的时长(纳秒)和提前结束窗口的输入个数，见{@link #setDebounce(long, TimeUnit, int)}.
+     */
+    private volatile long debounce;
+    private volatile int debounceCount;
+    /**
+     * 每个分类最多有多少个尚未用上的预取范围，见{@link #setPrefetch(int)}.
+     */
+    private volatile int prefetch;
+    /**
+     * 等待中（包括尚未转入等待栈的）范围数的上限：每个分类的和全部的，以及超限时的处理和阻塞的时限(纳秒)，见{@link
+     * #setCapacity(int, int, Overflow, long, TimeUnit)}.
+     */
+    private volatile int capacity, capacityTotal;
+    private volatile Overflow overflow = Overflow.REJECT;
+    private volatile long blockTimeout;
+    /**
+     * 全部分类中等待中的范围数，以及是否处于高压状态。
+     */
+    private final AtomicInteger backlog = new AtomicInteger(0);
+    private final AtomicBoolean pressed = new AtomicBoolean(false);
+    /**
+     * 阻塞的输入在其上等待空位，在等待的线程数（由其同步），以及控制器是否已关闭（关闭后不再阻塞）。
+     */
+    private final Object room = new Object();
+    private volatile int blocked;
+    private volatile boolean destroyed;
+    private volatile ThrottleListener<TAG> listener;
+    private volatile Journal<D, R, TAG> journal;
+    private volatile Tagged<TAG, D, R> tagNull;
 
     /**
      * @param counter  参见{@link Counter}, 可以是全局的。
@@ -85,6 +140,8 @@ abstract class AbsThrottle<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, T
     public void destroy(boolean cancel) {
         // counter.hold(this)会失败，不会重新发起请求。
         counter.unregister(this);
+        destroyed = true;
+        relieve(null); // 不会再派发了，阻塞的输入不必再等
         final Tagged fnull = tagNull;
         if (fnull != null) fnull.destroy(cancel);
         final Collection<Tagged<TAG, D, R>> list;
@@ -92,6 +149,177 @@ abstract class AbsThrottle<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, T
             list = new LinkedList<>(taggedMap.values());
         }
         for (Tagged f : list) f.destroy(cancel);
+        final Journal<D, R, TAG> j = journal;
+        if (j != null) try {
+            j.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 设置各{@link TAG 标记}分类的权重，按差额轮转(deficit round robin)的方式分配{@link #pushRequest(Tagged) push}机会：
+     * 每一轮中，有待处理任务的分类可连续派发其权重数的范围；因名额不足而没用完的，下次仍从该分类继续。设置之后，
+     * 触发{@link #pushRequest(Tagged) push}的分类不再优先，以免挤占高权重分类的名额。
+     *
+     * @param weigher 为null则各分类平等（默认）。
+     */
+    public void setWeigher(Weigher<TAG> weigher) {
+        this.weigher = weigher;
+    }
+
+    /**
+     * 设置满载队列超限时挤出正在执行的范围的策略：按{@link Evictor#cost(Object, int, float, long) 代价}从小到大挤出
+     * （同样代价的仍是先派发的先挤出），代价为{@link Evictor#SPARE}的不挤出，让它执行完。例如避免取消一个快要完成的大范围，
+     * 白白浪费已花费的后端时间，见{@link Evictor.Sunk}. 预取的范围仍最先被挤出。
+     * <p>
+     * 进度由任务执行者通过{@link #progress(AbsSorter.AbsR, TAG, float)}报告（可选）。
+     *
+     * @param evictor 为null则先派发的先挤出（默认）。
+     */
+    public void setEvictor(Evictor<TAG> evictor) {
+        this.evictor = evictor;
+    }
+
+    /**
+     * 设置执行结果的新鲜期：范围执行完成之后的<code>ttl</code>时间内，同一分类中新{@link #put(AbsSorter.AbsR, TAG,
+     * boolean) 输入}的范围会先减去其中已完成的部分，不再重复执行。例如来回翻页时，刚加载过的页面不会马上又加载一遍。
+     * <p>
+     * 仅记录成功完成的范围：被取消(包括被挤出局)或{@link Completion#fail(Throwable) 失败}的不算。
+     * 尚在等待{@link #submit(AbsSorter.AbsR, TAG, boolean) submit}结果的范围不会被减去（结果并没有缓存）。
+     *
+     * @param ttl <code>&lt;= 0</code>表示不启用（默认）。
+     */
+    public void setFreshness(long ttl, TimeUnit unit) {
+        freshness = ttl > 0 ? unit.toNanos(ttl) : 0;
+    }
+
+    /**
+     * 设置等待的期限：非promised的{@link #put(AbsSorter.AbsR, TAG, boolean) 输入}在<code>ttl</code>时间之后仍未派发的部分，
+     * 将从等待栈中清除，不再执行，并回调任务执行者的<code>expired</code>方法（{@link #submit(AbsSorter.AbsR, TAG, boolean)
+     * submit}的以{@link CancellationException}结束）。之后又输入的与之相交的部分重新计时。例如快速翻过的页面，等轮到的时候已经没必要再加载了。
+     * <p>
+     * 期限相同时，过期的顺序就是输入的顺序，因此每次派发之前只需检查最早的一个，仅在确有过期时才扫描一遍等待栈。
+     * 改变期限之前的输入仍按原期限，且排在它们之后的要等它们过期之后才检查。
+     *
+     * @param ttl <code>&lt;= 0</code>表示不过期（默认）。
+     */
+    public void setExpiry(long ttl, TimeUnit unit) {
+        expiry = ttl > 0 ? unit.toNanos(ttl) : 0;
+    }
+
+    /**
+     * 设置派发前的合并窗口：每个分类的窗口由其第一个{@link #put(AbsSorter.AbsR, TAG, boolean) 输入}打开，在
+     * <code>window</code>时间之后，或其中的输入达到<code>maxRanges</code>个时结束，期间该分类的输入不触发{@link
+     * #pushRequest(Tagged) push}, 结束时再统一push. 例如快速翻页时，最先经过的页面不会马上占用名额，窗口内的输入先合并，
+     * 超出满载队列的照常被挤出局，都不会发起；这样在突发时发到后端的请求更少也更满。
+     * <p>
+     * 只拦下输入触发的push：任务完成、{@link Counter#setRate(double, int) 限速}推迟到时以及其它分类的输入触发的push照常进行
+     * （也会派发本分类已在等待的）。promised的输入同样要等窗口结束，但不会被挤出局。
+     *
+     * @param window    <code>&lt;= 0</code>表示不启用（默认），输入后立即push.
+     * @param maxRanges <code>&lt;= 0</code>表示只按时间结束。
+     */
+    public void setDebounce(long window, TimeUnit unit, int maxRanges) {
+        debounceCount = maxRanges;
+        debounce = window > 0 ? unit.toNanos(window) : 0;
+    }
+
+    /**
+     * 设置预取：某个分类的等待栈都空了且{@link Counter}还有名额时，按最近输入的方向（起点的先后，只有一个输入时按
+     * <code>minFirst</code>），预先执行与之相邻、长度相同的范围，最多<code>budget</code>个尚未用上的。例如按日期翻页时，
+     * 提前加载接下来的几页。
+     * <p>
+     * 预取的优先级最低：本分类有输入在等待名额时，正在执行的预取范围会被取消以让出名额；满载队列超限时也最先被挤出局。
+     * 之后的输入与之相交即为命中；输入越过了它或改变了方向，则为浪费（仍在执行的被取消），被取消或失败的也是，
+     * 见{@link ThrottleListener#onPrefetched(Object, boolean)}. 要让已完成的预取结果被用上而不再执行，
+     * 应同时{@link #setFreshness(long, TimeUnit) 设置新鲜期}（或由任务执行者自己缓存）。
+     * <p>
+     * 对象（{@link ThrottleO}）没有相邻的概念，不会预取；{@link Counter#setRate(double, int) 限速}时也不预取，
+     * 以免预取占用发放许可而推迟真正的输入。
+     *
+     * @param budget <code>&lt;= 0</code>表示不启用（默认）。
+     */
+    public void setPrefetch(int budget) {
+        prefetch = Math.max(0, budget);
+    }
+
+    /**
+     * @see #setCapacity(int, int, Overflow, long, TimeUnit)
+     */
+    public void setCapacity(int perTag, int total, Overflow overflow) {
+        setCapacity(perTag, total, overflow, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 设置等待队列的上限：某个分类中，或全部分类加起来等待中（已输入而尚未派发）的范围数达到上限时，新的{@link
+     * #put(AbsSorter.AbsR, TAG, boolean) 输入}按<code>overflow</code>处理。例如后端故障期间生产者仍在不断输入，
+     * 不设上限的话等待栈会无限增长，而每次派发前的合并都要为整个积压付出代价。
+     * <p>
+     * 等待中的范围数在达到上限时通知{@link ThrottleListener#onPressure(Object, boolean) 高压}，回落到上限的一半及以下时
+     * 解除，以便上游的生产者放慢或恢复。全部分类的上限对应{@link ThrottleListener#onPressure(boolean)}.
+     * <p>
+     * 每个输入在入队之前先原子地预占位置，并发输入也不会超出上限。日志恢复的promised范围不受限制。
+     *
+     * @param perTag   每个分类的上限，<code>&lt;= 0</code>表示不限（默认）。
+     * @param total    全部分类的上限，<code>&lt;= 0</code>表示不限（默认）。对于{@link Overflow#DROP_OLDEST},
+     *                 丢弃的也是本次输入的分类中的。
+     * @param overflow 超限时的处理。
+     * @param timeout  仅用于{@link Overflow#BLOCK}, <code>&lt;= 0</code>表示一直等待。
+     */
+    public void setCapacity(int perTag, int total, Overflow overflow, long timeout, TimeUnit unit) {
+        this.overflow = overflow;
+        blockTimeout = timeout > 0 ? unit.toNanos(timeout) : 0;
+        capacity = Math.max(0, perTag);
+        capacityTotal = Math.max(0, total);
+        relieve(null); // 放宽了的话，唤醒阻塞的输入
+    }
+
+    /**
+     * 打开promised任务的日志，使之在重启之后能够继续。应在构造之后、输入之前调用，且只能调用一次。
+     * <p>
+     * 打开时先回放日志：各分类中已输入但尚未完成（包括已派发但没有完成）的promised范围，会合并之后重新作为promised
+     * 输入，不必由调用方重新提交；同时压缩日志。之后每个promised的输入都先写入日志才进入队列，完成、丢弃或取消也会记录。
+     * 日志在{@link #destroy(boolean)}时关闭。
+     * <p>
+     * 只保证至少执行一次：重启之前正在执行的范围会再执行一次。{@link #submit(AbsSorter.AbsR, TAG, boolean) submit}
+     * 的结果不会恢复。
+     *
+     * @param sync 是否每次输入都{@link java.nio.channels.FileChannel#force(boolean) 刷到磁盘}（同时输入的合并为一次），
+     *             否则只保证进程崩溃时不丢失。
+     * @throws IllegalStateException 已经打开过了。
+     */
+    void openJournal$(File file, Codec<R> ranges, Codec<TAG> tags, boolean sync) throws IOException {
+        if (journal != null) throw new IllegalStateException("日志已打开。");
+        final Journal<D, R, TAG> j = new Journal<>(this, file, ranges, tags, sync);
+        synchronized (this) {
+            if (journal != null) {
+                j.close();
+                throw new IllegalStateException("日志已打开。");
+            }
+            journal = j;
+        }
+        for (Map.Entry<TAG, List<R>> entry : j.recovered().entrySet()) {
+            final Tagged<TAG, D, R> f = getTagged(entry.getKey());
+            for (R r : entry.getValue()) {
+                occupy(f); // 不受上限限制
+                f.put(r, true, false); // 压缩时已经写入
+            }
+        }
+    }
+
+    /**
+     * 设置运行情况监听器，例如{@link ThrottleMetrics}. 没有设置时，除了一次<code>volatile</code>读之外没有额外开销；
+     * 排队时间只统计设置之后输入的范围。
+     *
+     * @param listener 为null则不监听（默认）。
+     */
+    public void setListener(ThrottleListener<TAG> listener) {
+        this.listener = listener;
+    }
+
+    private int weight(TAG tag) {
+        final Weigher<TAG> w = weigher;
+        return w == null ? 1 : Math.max(1, w.weight(tag));
     }
 
     @Override
@@ -102,18 +330,27 @@ abstract class AbsThrottle<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, T
 
     private synchronized void releaseMe(Tagged<TAG, D, R> f) {
         if (f == tagNull) tagNull = null;
-        else taggedMap.remove(f.tag);
+        else if (f.tag != null) taggedMap.remove(f.tag, f); // 可能已被同一tag的新对象替换
+    }
+
+    /**
+     * 是否存有该分类的对象，即该分类是否还没有因闲置而被释放。
+     */
+    synchronized boolean holds(TAG tag) {
+        return tag == null ? tagNull != null : taggedMap.containsKey(tag);
     }
 
     private Tagged<TAG, D, R> getTagged(TAG tag) {
         if (tag == null) {
-            if (tagNull == null)
+            Tagged<TAG, D, R> f = tagNull; // 只读一次，以免与releaseMe()竞争而读到null.
+            if (f == null)
                 synchronized (this) {
-                    if (tagNull == null) {
-                        tagNull = new Tagged<>(null, this);
+                    f = tagNull;
+                    if (f == null) {
+                        tagNull = f = new Tagged<>(null, this);
                     }
                 }
-            return tagNull;
+            return f;
         }
         synchronized (this) {
             Tagged<TAG, D, R> tagged = taggedMap.get(tag);
@@ -133,9 +370,41 @@ abstract class AbsThrottle<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, T
      * @param range    范围参数，同{@link AbsSorter#put(AbsSorter.AbsR)}的参数。
      * @param tag      标签，用于给range分类。
      * @param promised 该任务是否[承诺完成]（不会被挤出局）。
+     * @return false 等待队列已满而被拒绝，见{@link #setCapacity(int, int, Overflow, long, TimeUnit)}.
      */
-    void put(R range, TAG tag, boolean promised) {
-        getTagged(tag).put(range, promised);
+    boolean put(R range, TAG tag, boolean promised) {
+        final Tagged<TAG, D, R> f = admit(tag);
+        if (f == null) return false;
+        f.put(range, promised);
+        return true;
+    }
+
+    /**
+     * 同{@link #put(AbsSorter.AbsR, TAG, boolean)}, 但返回该范围的结果。需要支持结果的任务执行者。
+     * <p>
+     * 范围可能被合并进更大的范围执行，也可能被拆开分几次执行，各次执行的结果会被切分或分发给所有等待其中某部分的
+     * {@link CompletableFuture}, 都完成之后再合并为该范围的结果。若其中某部分被挤出局、丢弃、取消或执行失败，则以
+     * {@link CancellationException}或相应的异常结束；等待队列已满而被拒绝的，以{@link RejectedExecutionException}结束。
+     *
+     * @throws IllegalStateException 任务执行者不支持结果。
+     */
+    <V> CompletableFuture<V> submit(R range, TAG tag, boolean promised) {
+        if (!executor.results$()) throw new IllegalStateException("任务执行者不支持结果。");
+        final Tagged<TAG, D, R> f = admit(tag);
+        if (f == null) {
+            final CompletableFuture<V> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new RejectedExecutionException("等待队列已满。"));
+            return rejected;
+        }
+        return typed(f.submit(range, promised));
+    }
+
+    /**
+     * 结果的类型由调用方与其任务执行者（各控制器的<code>ResultExecutor</code>）约定，在此无从检查。
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> CompletableFuture<V> typed(CompletableFuture<?> future) {
+        return (CompletableFuture<V>) future;
     }
 
     /**
@@ -146,6 +415,8 @@ abstract class AbsThrottle<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, T
      * @param withPromised 是否将[承诺完成]的任务一并丢弃。
      */
     void drop(R range, TAG tag, boolean withPromised) {
+        final ThrottleListener<TAG> l = listener;
+        if (l != null) l.onDrop(tag, withPromised);
         getTagged(tag).drop(range, withPromised);
     }
 
@@ -157,31 +428,199 @@ abstract class AbsThrottle<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, T
      * @param withPromised 是否将[承诺完成]的任务一并取消。
      */
     void cancel(R range, TAG tag, boolean withPromised) {
+        final ThrottleListener<TAG> l = listener;
+        if (l != null) l.onCancel(tag, withPromised);
         getTagged(tag).cancel(range, withPromised);
     }
 
     /**
-     * @param first 优先
+     * 为一个输入在等待队列中{@link #reserve(Tagged) 预占}位置，已满则按{@link #overflow}处理。
+     *
+     * @return 已为该输入预占了位置的分类对象，null表示拒绝。
+     */
+    private Tagged<TAG, D, R> admit(TAG tag) {
+        while (true) {
+            final Tagged<TAG, D, R> f = admit$(tag);
+            if (f == null || f.alive()) return f;
+            unreserve(f); // 预占之前已因闲置而被释放，重新取。
+        }
+    }
+
+    private Tagged<TAG, D, R> admit$(TAG tag) {
+        Tagged<TAG, D, R> f = getTagged(tag);
+        if (reserve(f)) return f;
+        final ThrottleListener<TAG> l = listener;
+        final Overflow o = overflow;
+        if (o == Overflow.DROP_OLDEST) {
+            do {
+                if (!f.shed()) { // 没有可丢弃的，照常接受。
+                    occupy(f);
+                    break;
+                }
+                if (l != null) l.onOverflow(f.tag, true);
+            } while (!reserve(f));
+            return f;
+        }
+        if (o == Overflow.BLOCK) {
+            while (await(f)) {
+                f = getTagged(tag); // 阻塞期间原来的分类对象可能已闲置而被释放，重新取。
+                if (reserve(f)) return f;
+                if (destroyed) {
+                    occupy(f);
+                    return f;
+                }
+            }
+        }
+        if (l != null) l.onOverflow(tag, false);
+        return null;
+    }
+
+    /**
+     * 先CAS增加本分类的等待数，再增加全部分类的{@link #backlog}, 都不超过上限才算预占成功，否则回退。
+     * 这样并发的输入也不会超出上限。
+     *
+     * @return false 已满。
+     */
+    private boolean reserve(Tagged<TAG, D, R> f) {
+        final int per = capacity, total = capacityTotal;
+        if (per <= 0 && total <= 0) {
+            occupy(f);
+            return true;
+        }
+        int n;
+        do {
+            n = f.queued.get();
+            if (per > 0 && n >= per) return false;
+        } while (!f.queued.compareAndSet(n, n + 1));
+        do {
+            n = backlog.get();
+            if (total > 0 && n >= total) {
+                f.queued.decrementAndGet();
+                notifyRoom(); // 回退之前可能有输入因此而阻塞
+                return false;
+            }
+        } while (!backlog.compareAndSet(n, n + 1));
+        return true;
+    }
+
+    /**
+     * 退回{@link #reserve(Tagged)}或{@link #occupy(Tagged)}占用的位置。
+     */
+    private void unreserve(Tagged<TAG, D, R> f) {
+        f.queued.decrementAndGet();
+        backlog.decrementAndGet();
+        notifyRoom();
+    }
+
+    private void notifyRoom() {
+        if (blocked > 0) synchronized (room) {
+            room.notifyAll();
+        }
+    }
+
+    /**
+     * 不论上限，占用一个位置。
+     */
+    private void occupy(Tagged<TAG, D, R> f) {
+        f.queued.incrementAndGet();
+        backlog.incrementAndGet();
+    }
+
+    private boolean full(Tagged<TAG, D, R> f) {
+        final int per = capacity, total = capacityTotal;
+        return per > 0 && f.size() >= per || total > 0 && backlog.get() >= total;
+    }
+
+    /**
+     * 阻塞直到有了空位。
+     *
+     * @return false 超时或被中断（保留中断状态）。
+     */
+    private boolean await(Tagged<TAG, D, R> f) {
+        final long timeout = blockTimeout, deadline = System.nanoTime() + timeout;
+        synchronized (room) {
+            blocked++;
+            try {
+                while (!destroyed && full(f)) {
+                    if (timeout <= 0) room.wait();
+                    else {
+                        final long left = deadline - System.nanoTime();
+                        if (left <= 0) return false;
+                        TimeUnit.NANOSECONDS.timedWait(room, left);
+                    }
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                blocked--;
+            }
+        }
+    }
+
+    /**
+     * 输入之后，等待中的范围数达到上限则通知高压。
+     */
+    private void press(Tagged<TAG, D, R> f) {
+        final int per = capacity, total = capacityTotal;
+        if (per <= 0 && total <= 0) return;
+        final ThrottleListener<TAG> l = listener;
+        if (per > 0 && f.size() >= per && f.pressed.compareAndSet(false, true) && l != null) l.onPressure(f.tag, true);
+        if (total > 0 && backlog.get() >= total && pressed.compareAndSet(false, true) && l != null) l.onPressure(true);
+    }
+
+    /**
+     * 等待中的范围减少之后，唤醒阻塞的输入；回落到上限的一半及以下（或不再设上限）则解除高压。
+     *
+     * @param f 为null则仅检查全部分类的。
+     */
+    private void relieve(Tagged<TAG, D, R> f) {
+        notifyRoom();
+        final ThrottleListener<TAG> l = listener;
+        if (f != null && f.pressed.get() && calm(f.size(), capacity) && f.pressed.compareAndSet(true, false) && l != null)
+            l.onPressure(f.tag, false);
+        if (pressed.get() && calm(backlog.get(), capacityTotal) && pressed.compareAndSet(true, false) && l != null)
+            l.onPressure(false);
+    }
+
+    private static boolean calm(int size, int capacity) {
+        return capacity <= 0 || size <= capacity / 2;
+    }
+
+    /**
+     * 报告正在执行的范围的进度，供{@link #setEvictor(Evictor) 挤出策略}参考。没有设置策略或该范围不在执行中则忽略。
+     *
+     * @param range    同任务执行者收到的范围。
+     * @param tag      标签，同任务执行者收到的。
+     * @param fraction <code>[0, 1]</code>.
+     */
+    void progress(R range, TAG tag, float fraction) {
+        if (evictor != null) getTagged(tag).progress(range, fraction);
+    }
+
+    /**
+     * 没有优先的分类，例如{@link Counter}限速之后推迟的push.
+     */
+    void pushRequest() {
+        pushRequest(null);
+    }
+
+    /**
+     * @param first 优先，可以为null.
      */
     private void pushRequest(Tagged<TAG, D, R> first) {
         request.set(true);
         if (pushing.compareAndSet(false, true)) {
             request.set(false);
         } else return;
-        boolean empty = first.pushRequest$(); // 只是优先权，不执行也罢
+        boolean empty = true;
+        if (first != null) {
+            if (weigher == null) empty = first.pushRequest$(); // 只是优先权，不执行也罢
+            if (first.pending()) rotation.offer(first);
+        }
         while (true) {
-            final Tagged fnull = tagNull;
-            if (fnull != null) {
-                empty &= fnull.pushRequest$();
-            }
-            final List<Tagged<TAG, D, R>> list;
-            synchronized (this) {
-                list = new LinkedList<>(taggedMap.values()); // 必须new, 不然这个values会变。
-            }
-            for (Tagged f : list) {
-                empty &= f.pushRequest$();
-                // if (!empty) 当然还要继续
-            }
+            empty &= rotation.round();
             if (empty) {
                 pushing.set(false); // 必须在检查之前置为false, 然后重新竞争。
                 if (request.get() && pushing.compareAndSet(false, true)) {
@@ -192,26 +631,110 @@ abstract class AbsThrottle<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, T
         }
     }
 
-    private static class Tagged<TAG, D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
+    private static class Tagged<TAG, D extends Discrete<D>, R extends AbsSorter.AbsR<D>> extends Rotation.Member {
         // new LinkedHashMap<>(0, .75f, true/*是否进行重排序*/)
-        private final Map<String, R> executingPromised = new HashMap<>();
-        private final LinkedHashMap<String, R> executing = new LinkedHashMap<>(); // 需要保留顺序以备驱逐取消
+        // 以范围本身作键（见AbsR#equals/hashCode），避免在派发路径上反复拼接字符串。
+        private final Map<R, R> executingPromised = new HashMap<>();
+        private final LinkedHashMap<R, R> executing = new LinkedHashMap<>(); // 需要保留顺序以备驱逐取消
         private final Stack<R> waitingPromised = new Stack<>();
         private final Stack<R> waiting = new Stack<>();
+        // 生产者只管无锁入队，不与派发竞争本对象的锁；由唯一在执行pushRequest$()的线程按序转入上面的等待栈(仍是栈顶优先)。
+        private final Queue<R> intakePromised = new ConcurrentLinkedQueue<>();
+        private final Queue<R> intake = new ConcurrentLinkedQueue<>();
         private final AbsThrottle<D, R, TAG> throttle;
-        private final LruCache<String, R> limiter;
+        private final LruCache<R, R> limiter;
         private final AbsSorter<D, R> sorter;
+        /**
+         * 正在执行的范围的区间索引：前者仅promised的，后者包括两者。用于一遍扫描就从等待栈中减去正在执行的部分。
+         */
+        private final AbsSorter<D, R> inflightPromised, inflight;
+        /**
+         * 待完成的{@link CompletableFuture}, 在释放锁之后再{@link #flush() 完成}，以免在锁内执行调用方的回调。
+         */
+        private final Queue<Runnable> completions = new ConcurrentLinkedQueue<>();
+        /**
+         * {@link #submit(AbsSorter.AbsR, boolean) submit}的范围尚未完成的结果。由本对象同步。
+         */
+        private final Waiters<D, R> waiters;
+        /**
+         * 新鲜期内执行完成的范围，见{@link AbsThrottle#setFreshness(long, TimeUnit)}. 由本对象同步。
+         */
+        private final Freshness<D, R> fresh;
+        /**
+         * 闲置而只剩新鲜期内的记录时，到期之后再次尝试{@link #releaseWhenIdle() 释放}本对象的定时任务。由本对象同步。
+         */
+        private ScheduledFuture<?> sweeper;
+        /**
+         * 是否已因闲置而被{@link #releaseWhenIdle() 释放}。由本对象同步。
+         */
+        private boolean released;
+        /**
+         * 尚未派发的输入及其输入时间，仅在设置了{@link AbsThrottle#setListener(ThrottleListener) 监听器}时记录。
+         */
+        private final Stamps<D, R> stamps = new Stamps<>();
+        /**
+         * 非promised的输入的过期时间，见{@link AbsThrottle#setExpiry(long, TimeUnit)}. 由本对象同步。
+         */
+        private final Deadlines<D, R> deadlines = new Deadlines<>();
+        /**
+         * 被本组件取消的正在执行的范围，它们结束时不算完成，也不作为延迟样本。
+         */
+        private final Set<R> cancelled = Collections.newSetFromMap(new IdentityHashMap<R, Boolean>());
+        /**
+         * 预取，见{@link AbsThrottle#setPrefetch(int)}. 由本对象同步。
+         */
+        private final Prefetch<D, R> prefetch;
+        /**
+         * 设置了{@link AbsThrottle#setEvictor(Evictor) 挤出策略}时，正在执行的非promised范围的挤出顺序。
+         */
+        private final Eviction<D, R> eviction = new Eviction<>();
         private final TAG tag;
+        /**
+         * 合并窗口，见{@link AbsThrottle#setDebounce(long, TimeUnit, int)}.
+         */
+        private final Debounce window = new Debounce() {
+            @Override
+            void push() {
+                pushRequest();
+            }
+        };
+        /**
+         * 派发前的{@link #merge$(List, AbsSorter.AbsR) 合并}，其吸收的范围数仅由在执行pushRequest()的线程访问。
+         */
+        private final Coalescer<D, R> coalescer;
+        /**
+         * 等待中的范围数（包括尚未转入等待栈的输入），输入之前{@link AbsThrottle#reserve(Tagged) 预占}；以及最近一次
+         * {@link #resize$() 更新}时计入的两个等待栈的大小之和（由本对象同步）。见{@link AbsThrottle#setCapacity(int, int,
+         * Overflow, long, TimeUnit)}.
+         */
+        private final AtomicInteger queued = new AtomicInteger(0);
+        private int stacked;
+        /**
+         * 是否处于高压状态。
+         */
+        private final AtomicBoolean pressed = new AtomicBoolean(false);
 
         Tagged(TAG tag, AbsThrottle<D, R, TAG> throttle) {
             this.tag = tag;
             this.throttle = throttle;
             this.sorter = throttle.newSorter();
-            this.limiter = new LruCache<String, R>(throttle.counter.maxReqCount) {
+            this.coalescer = new Coalescer<>(sorter, throttle.limit, throttle.minFirst);
+            this.prefetch = new Prefetch<>(throttle.minFirst);
+            this.inflightPromised = throttle.newSorter();
+            this.inflight = throttle.newSorter();
+            this.fresh = new Freshness<>(throttle.newSorter());
+            this.waiters = new Waiters<>(throttle.executor, completions);
+            this.limiter = new LruCache<R, R>(throttle.counter.maxReqCount) {
                 @Override
-                protected void entryRemoved(boolean evicted, final String key, R oldValue, R newValue) {
-                    if (evicted) {  // true表示填满了被驱逐，false表示手动put相同的key或remove.
+                protected void entryRemoved(boolean evicted, final R key, R oldValue, R newValue) {
+                    if (evicted && !eviction.spared(oldValue)) {  // true表示填满了被驱逐，false表示手动put相同的key或remove.
                         cancel$(executing, oldValue, false);
+                        reject$(oldValue, false, new CancellationException());
+                        final ThrottleListener<TAG> l = throttle.listener;
+                        if (l != null) {
+                            stamps.unstamp(oldValue, false);
+                            l.onEvict(tag);
+                        }
                     }
                 }
             };
@@ -230,34 +753,153 @@ abstract class AbsThrottle<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, T
                 // limiter.evictAll(); // 驱逐会触发cancel调用
                 // waitingPromised 忽略
             }
+            synchronized (this) {
+                waiters.rejectAll(new CancellationException());
+            }
+            flush();
             throttle.releaseMe(this);
         }
 
         private synchronized void releaseWhenIdle() {
-            if (waitingPromised.isEmpty() && waiting.isEmpty()
-                    && executingPromised.isEmpty() && executing.isEmpty())
-                destroy(false);
+            final long now = System.nanoTime();
+            if (!fresh.isEmpty()) fresh.expire(now);
+            if (intakePromised.isEmpty() && intake.isEmpty()
+                    && waitingPromised.isEmpty() && waiting.isEmpty()
+                    && executingPromised.isEmpty() && executing.isEmpty() && waiters.isEmpty()
+                    && queued.get() == 0) { // 已预占了位置的输入即将到来
+                if (fresh.isEmpty()) {
+                    released = true;
+                    destroy(false);
+                }
+                else if (sweeper == null) { // 新鲜期内的记录会让本对象保留到过期之后，若其间再无活动（如一次性的tag），由定时器来释放。
+                    sweeper = Tasks.timer().schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            synchronized (Tagged.this) {
+                                sweeper = null;
+                            }
+                            releaseWhenIdle();
+                        }
+                    }, fresh.lastAt() - now, TimeUnit.NANOSECONDS);
+                }
+            }
         }
 
         /**
-         * 新增某任务的输入参数范围。
+         * 新增某任务的输入参数范围。调用之前须已为其{@link AbsThrottle#reserve(Tagged) 预占}了位置。
          *
          * @param range    范围参数，同{@link AbsSorter#put(AbsSorter.AbsR)}的参数。
          * @param promised 该任务是否[承诺完成]（不会被挤出局）。
          */
         void put(R range, boolean promised) {
-            if (promised) synchronized (this) {
-                waitingPromised.push(range);
+            put(range, promised, true);
+        }
+
+        /**
+         * @param journal 是否将promised的输入写入日志。
+         */
+        void put(R range, boolean promised, boolean journal) {
+            if (promised && journal) {
+                final Journal<D, R, TAG> j = throttle.journal;
+                if (j != null) j.put(tag, range);
             }
-            else synchronized (this) {
-                waiting.push(range);
+            final ThrottleListener<TAG> l = throttle.listener;
+            if (l != null) {
+                l.onPut(tag, promised);
+                stamps.onPut(range);
             }
-            pushRequest();
+            (promised ? intakePromised : intake).offer(range);
+            if (!promised) {
+                final long ttl = throttle.expiry;
+                if (ttl > 0) synchronized (this) {
+                    deadlines.put(range, System.nanoTime() + ttl);
+                }
+            }
+            throttle.press(this);
+            throttle.rotation.offer(this);
+            if (!window.onPut(throttle.debounce, throttle.debounceCount)) pushRequest();
+        }
+
+        CompletableFuture<Object> submit(R range, boolean promised) {
+            final AbsSorter<D, R> remaining = throttle.newSorter();
+            final CompletableFuture<Object> future;
+            synchronized (this) {
+                future = waiters.add(range, promised, remaining);
+            }
+            put(range, promised);
+            return future;
+        }
+
+        /**
+         * 是否仍可接受输入，即尚未因闲置而被释放。须在{@link AbsThrottle#reserve(Tagged) 预占}之后调用。
+         */
+        synchronized boolean alive() {
+            return !released;
+        }
+
+        /**
+         * 等待中的范围数（包括promised的）。
+         */
+        int size() {
+            return queued.get();
+        }
+
+        /**
+         * 在等待栈变化之后更新{@link #stacked}及全部分类的总数。
+         */
+        private synchronized void resize$() {
+            final int n = waitingPromised.size() + waiting.size(), delta = n - stacked;
+            if (delta == 0) return;
+            stacked = n;
+            queued.addAndGet(delta);
+            throttle.backlog.addAndGet(delta);
+        }
+
+        /**
+         * 丢弃最早的一个非promised的等待中范围，见{@link Overflow#DROP_OLDEST}. 等待栈底的比尚未转入的都早。
+         *
+         * @return false 没有可丢弃的。
+         */
+        private boolean shed() {
+            R r;
+            synchronized (this) {
+                r = waiting.empty() ? null : waiting.remove(0);
+                if (r != null) resize$();
+            }
+            if (r == null) {
+                r = intake.poll();
+                if (r == null) return false;
+                queued.decrementAndGet();
+                throttle.backlog.decrementAndGet();
+            }
+            synchronized (this) {
+                reject$(r, false, new CancellationException());
+            }
+            stamps.unstamp(r, false);
+            flush();
+            return true;
+        }
+
+        @Override
+        boolean pending() {
+            return !intakePromised.isEmpty() || !intake.isEmpty() || !waitingPromised.empty() || !waiting.empty();
         }
 
         void drop(R range, boolean withPromised) {
-            if (withPromised) drop$(waitingPromised, range);
-            drop$(waiting, range);
+            if (withPromised) {
+                final Journal<D, R, TAG> j = throttle.journal;
+                if (j != null) j.drop(tag, range);
+            }
+            drain$();
+            synchronized (this) {
+                if (withPromised) drop$(waitingPromised, range);
+                drop$(waiting, range);
+                reject$(range, withPromised, new CancellationException());
+                resize$();
+            }
+            stamps.unstamp(range, false);
+            flush();
+            throttle.relieve(this);
             pushRequest();
         }
 
@@ -271,252 +913,511 @@ abstract class AbsThrottle<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, T
             throttle.pushRequest(this);
         }
 
-        private synchronized void cancel$(Map<String, R> map, R range, boolean force) {
+        @Override
+        int weight() {
+            return throttle.weight(tag);
+        }
+
+        @Override
+        boolean push() {
+            return pushRequest$();
+        }
+
+        /**
+         * 将已入队的输入按先后顺序转入等待栈。
+         */
+        private synchronized void drain$() {
+            R r;
+            int polled = 0;
+            final boolean observe = throttle.prefetch > 0 || !prefetch.isEmpty();
+            if (throttle.freshness > 0) {
+                fresh.expire(System.nanoTime());
+                while ((r = intakePromised.poll()) != null) {
+                    polled++;
+                    if (observe) observe$(r);
+                    trim$(waitingPromised, r);
+                }
+                while ((r = intake.poll()) != null) {
+                    polled++;
+                    if (observe) observe$(r);
+                    trim$(waiting, r);
+                }
+            } else {
+                if (!fresh.isEmpty()) fresh.clear();
+                while ((r = intakePromised.poll()) != null) {
+                    polled++;
+                    if (observe) observe$(r);
+                    waitingPromised.push(r);
+                }
+                while ((r = intake.poll()) != null) {
+                    polled++;
+                    if (observe) observe$(r);
+                    waiting.push(r);
+                }
+            }
+            if (!deadlines.isEmpty()) {
+                if (throttle.expiry > 0) purge$(System.nanoTime());
+                else deadlines.clear();
+            }
+            stacked += polled; // 转入等待栈不改变等待数，其间被减去的由resize$()计入。
+            resize$();
+        }
+
+        /**
+         * 从等待栈中清除过期的输入。较晚输入的相交范围不算过期，见{@link Deadlines}.
+         */
+        private synchronized void purge$(long now) {
+            if (!deadlines.due(now)) return;
+            final AbsSorter<D, R> index = throttle.newSorter();
+            if (!deadlines.expire(now, index)) return;
+            final List<R> expired = new ArrayList<>();
+            prune$(waiting, index, expired);
+            if (expired.isEmpty()) return;
+            final ThrottleListener<TAG> l = throttle.listener;
+            for (final R r : expired) {
+                reject$(r, false, new CancellationException());
+                if (l != null) stamps.unstamp(r, false);
+                completions.offer(new Runnable() {
+                    @Override
+                    public void run() {
+                        throttle.executor.expired$(r, tag);
+                        if (l != null) l.onExpire(tag);
+                    }
+                });
+            }
+        }
+
+        /**
+         * 将<code>range</code>减去新鲜期内已完成的部分之后入栈。被切开的部分同{@link #prune$(Stack, AbsSorter)}.
+         */
+        private synchronized void trim$(Stack<R> stack, R range) {
+            final List<R> pieces = new ArrayList<>(2);
+            if (!fresh.hasMore() || waited$(range) || !fresh.subtract(range, pieces)) {
+                stack.push(range);
+            } else {
+                final Journal<D, R, TAG> j = throttle.journal;
+                if (j != null && stack == waitingPromised) { // 减去的部分不必再执行
+                    final List<R> done = new ArrayList<>(2);
+                    fresh.intersect(range, done);
+                    for (R r : done) j.done(tag, r);
+                }
+                if (pieces.isEmpty()) {
+                    stamps.unstamp(range, true); // 全部都在新鲜期内，不会派发了
+                } else if (throttle.minFirst) {
+                    for (int i = pieces.size() - 1; i >= 0; i--) stack.push(pieces.get(i));
+                } else stack.addAll(pieces);
+            }
+        }
+
+        private synchronized boolean waited$(R range) {
+            return waiters.waited(range);
+        }
+
+        private synchronized void cancel$(Map<R, R> map, R range, boolean force) {
             for (R r : map.values()) {
                 if (force ? range.contains(r) : range.equals(r)) {
+                    cancelled.add(r); // 先记下，执行者可能在cancel$()中同步回调onDone.
                     throttle.executor.cancel$(r, tag);
+                    reject$(r, map == executingPromised, new CancellationException());
                 }
             }
         }
 
+        private synchronized boolean overlap$(List<R> list, R range) {
+            for (R r : list) {
+                if (r.overlap(range)) return true;
+            }
+            return false;
+        }
+
         private synchronized void drop$(List<R> list, R range) {
-            for (int i = list.size() - 1; i >= 0; i--) {
-                final R r = list.get(i);
-                if (r.overlap(range)) { // 有交集
-                    list.remove(i);   // 先删掉，再插入
-                    if (range.contains(r)) { // r在drop的范围内
-                        // nothing...
-                    } else { // 需要drop操作
-                        require(!sorter.hasMore());
-                        sorter.put(r);
-                        sorter.drop(range);
-                        R rd;
-                        while ((rd = sorter.takeSerial(null, Integer.MAX_VALUE, throttle.minFirst)) != null) {
-                            list.add(i, rd); // 注意index不变，则先take出来的，会往stack顶部方向挤压。
-                        }
-                    }
+            coalescer.drop(list, range);
+        }
+
+        /**
+         * 记下输入的方向，并判定尚未用上的预取范围，浪费了而仍在执行的取消掉，见{@link Prefetch#observe(AbsSorter.AbsR, Map,
+         * ThrottleListener, Object)}.
+         */
+        private synchronized void observe$(R range) {
+            final List<R> wasted = prefetch.observe(range, executing, throttle.listener, tag);
+            if (wasted != null) for (R r : wasted) cancel$(executing, r, false); // 遍历完再取消
+        }
+
+        /**
+         * 等待栈都空了时，用剩余的名额预取，直到用完预算。
+         */
+        private void prefetch$(List<R> ranges, List<Runnable> onDones) {
+            final ThrottleListener<TAG> l = throttle.listener;
+            while (true) {
+                final R range;
+                synchronized (this) {
+                    if (!waitingPromised.empty() || !waiting.empty()) return;
+                    range = prefetch.predict(sorter, inflight, fresh, throttle.limit, throttle.prefetch);
+                    if (range == null) return;
+                }
+                if (!throttle.counter.hold(throttle)) return;
+                synchronized (this) {
+                    prefetch.onDispatch(range);
                 }
+                track$(range, false);
+                ranges.add(range);
+                onDones.add(onDone(range, false));
+                if (l != null) l.onPrefetch(tag);
             }
         }
 
+        synchronized void progress(R range, float fraction) {
+            eviction.progress(range, fraction);
+        }
+
         /**
-         * 从等待栈中取出不超过最大限度(throttle.limit)的范围参数。
+         * 名额不足（而不是{@link Counter#setRate(double, int) 限速}）而本分类仍有等待中的任务时，取消一个正在执行的预取范围
+         * 以让出名额（其结束时会再push）。
          */
-        private synchronized R take$(Stack<R> stack) {
-            if (stack.empty()) return null;
-            R range = stack.pop();
-            if (range.delta() + 1 > throttle.limit) {
-                require(!sorter.hasMore());
-                sorter.put(range);
-                range = sorter.takeSerial(null, throttle.limit, throttle.minFirst);
-                final R rd = sorter.takeSerial(null, Integer.MAX_VALUE, throttle.minFirst);
-                if (rd != null) stack.push(rd);
+        private synchronized void evict$() {
+            if (prefetch.isEmpty() || waitingPromised.empty() && waiting.empty()) return;
+            for (R r : prefetch.ranges()) {
+                if (executing.containsKey(r) && !cancelled.contains(r)) {
+                    cancel$(executing, r, false);
+                    return;
+                }
             }
-            return range;
         }
 
         /**
-         * 将range尽可能滚到最大限度(throttle.limit), 即参数满载。
+         * 从等待栈中减去<code>index</code>中的所有范围，见{@link Coalescer#prune(List, AbsSorter, List)}.
+         */
+        private synchronized void prune$(Stack<R> stack, AbsSorter<D, R> index) {
+            prune$(stack, index, null);
+        }
+
+        /**
+         * @param removed 不为null则收集被减去的部分。
+         */
+        private synchronized void prune$(Stack<R> stack, AbsSorter<D, R> index, List<R> removed) {
+            coalescer.prune(stack, index, removed);
+        }
+
+        private synchronized void track$(R range, boolean promised) {
+            if (promised) {
+                executingPromised.put(range, range);
+                inflightPromised.put(range);
+            } else executing.put(range, range);
+            inflight.put(range);
+        }
+
+        private synchronized void untrack$(R range, boolean promised) {
+            if (promised) {
+                executingPromised.remove(range);
+                inflightPromised.drop(range);
+                Coalescer.reindex(inflightPromised, executingPromised.values(), range);
+            } else executing.remove(range);
+            inflight.drop(range);
+            Coalescer.reindex(inflight, executingPromised.values(), range);
+            Coalescer.reindex(inflight, executing.values(), range);
+        }
+
+        /**
+         * 把执行完成的范围的结果切分给等待其中某部分的submit, 见{@link Waiters#resolve(AbsSorter.AbsR, Object)}.
          */
+        private synchronized void resolve$(R range, Object result) {
+            waiters.resolve(range, result);
+        }
+
+        /**
+         * 尚未完成的部分与<code>range</code>有交集的submit都以异常<code>e</code>结束。
+         *
+         * @param withPromised 是否包括promised的。
+         */
+        private synchronized void reject$(R range, boolean withPromised, Throwable e) {
+            waiters.reject(range, withPromised, e);
+        }
+
+        /**
+         * 完成{@link #completions}. 不可在持有锁的时候调用。
+         */
+        private void flush() {
+            Runnable r;
+            while ((r = completions.poll()) != null) r.run();
+        }
+
+        /**
+         * 从等待栈中取出不超过最大限度(throttle.limit)的范围参数。
+         */
+        private synchronized R take$(Stack<R> stack) {
+            return coalescer.take(stack);
+        }
+
         private synchronized R merge$(List<R> list, R range) {
-            // 例如：list[[9, 20], [6], [11], [3], [7], [8], [12]], range[10],
-            // 如果仅一遍：则结果是list[[6], [11], [3], [7], [8], [12]], return[9, 20]
-            // 显然应该多遍，但到底多少遍？那就每join一次就再来一遍。
-            while (true) {
-                boolean loop = false;
-                for (int i = list.size() - 1; i >= 0; i--) {
-                    final int len = range.delta() + 1;
-                    require(len <= throttle.limit);
-                    if (len == throttle.limit) {
-                        // drop$(list, i, range); // 全部drop, 而不是从i开始drop, 原因见上面示例。
-                        // return range;
-                        break;
-                    }
-                    final R r = list.get(i);
-                    if (range.contains(r)) {
-                        list.remove(i); // 合并的结果就是删掉
-                    } else if (r.joinable(range)) { // 是否可合并
-                        require(!sorter.hasMore());
-                        sorter.put(r);
-                        sorter.put(range);
-                        final R favor = sorter.takeSerial(null, throttle.limit, throttle.minFirst);
-                        final R rd = sorter.takeSerial(null, Integer.MAX_VALUE, throttle.minFirst);
-                        require(!sorter.hasMore()); // 两次应该拿完
-                        if (rd == null) {
-                            range = favor; // 滚雪球把range滚大
-                            list.remove(i); // 已经被吸收，那么就删掉
-                        } else {
-                            if (range.contains(rd)) {
-                                // range内的任何元素都是优先的，不可以留下来。但可以换一头再试试。
-                                sorter.put(r);
-                                sorter.put(range);
-                                final R favor1 = sorter.takeSerial(null, throttle.limit, !/*换一头*/throttle.minFirst);
-                                final R rd1 = sorter.takeSerial(null, Integer.MAX_VALUE, throttle.minFirst);
-                                require(!range.contains(rd1));
-                                range = favor1;
-                                list.set(i, rd1);
-                            } else {
-                                range = favor; // 滚雪球把range滚大
-                                list.set(i, rd); // 替换掉
-                            }
-                        }
-                        loop = true;
-                        // break; // 基于上面的测试数据，如果break则循环次数更多。
-                    }
-                }
-                if (!loop) break;
-            }
-            return range;
+            return coalescer.merge(list, range);
+        }
+
+        /**
+         * 同反复{@link #take$(Stack)}再{@link #merge$(List, AbsSorter.AbsR)}直到栈空，但只排序一次，见{@link Coalescer#drain(Stack)}.
+         */
+        private synchronized List<R> drain$(Stack<R> stack) {
+            return coalescer.drain(stack);
         }
 
         /**
          * @return true 不可以继续push, false 反之。
          */
         private boolean pushRequest$() {
+            drain$();
+            // 本轮要派发的。若执行者支持批量，则本轮能拿到计数的都在最后一次性派发。
+            final List<R> ranges = new ArrayList<>(2);
+            final List<Runnable> onDones = new ArrayList<>(2);
+            final boolean batch = throttle.executor.batch$();
             boolean empty = true;
-            if (throttle.counter.hold(throttle)) {
+            int held = throttle.counter.hold$(throttle);
+            if (held == Counter.HELD) {
                 if (waitingPromised.empty()) {
-                    throttle.counter.drop(throttle);
+                    throttle.counter.unhold(throttle);
                     empty &= true;
                 } else {
-                    final List<R> list;
-                    synchronized (this) {
-                        list = new LinkedList<>(executingPromised.values());
-                    }
-                    for (R r : list) {
-                        drop$(waitingPromised, r);
-                    }
+                    prune$(waitingPromised, inflightPromised);
                     R range = take$(waitingPromised);
                     if (range == null) {
-                        throttle.counter.drop(throttle);
+                        throttle.counter.unhold(throttle);
                         empty &= true;
                     } else {
-                        range = merge$(waitingPromised, range);
-                        synchronized (this) {
-                            executingPromised.put(range.unique(), range);
+                        while (true) {
+                            range = merge$(waitingPromised, range);
+                            track$(range, true);
+                            ranges.add(range);
+                            onDones.add(onDone(range, true));
+                            if (!batch || waitingPromised.empty() || !throttle.counter.hold(throttle)) break;
+                            prune$(waitingPromised, inflightPromised);
+                            range = take$(waitingPromised);
+                            if (range == null) {
+                                throttle.counter.unhold(throttle);
+                                break;
+                            }
                         }
-                        postExec(range, true);
                         empty &= waitingPromised.empty();
                     }
                 }
-            } else return true;
+            } else {
+                if (held == Counter.FULL) evict$(); // 只是限速的话，让出名额也无济于事
+                throttle.relieve(this); // 可能有过期的
+                return true;
+            }
             // 与上面promised的逻辑有些不同
-            if (throttle.counter.hold(throttle)) {
+            held = throttle.counter.hold$(throttle);
+            if (held == Counter.HELD) {
                 if (waiting.empty()) {
-                    throttle.counter.drop(throttle);
+                    throttle.counter.unhold(throttle);
                     empty &= true;
                 } else {
-                    List<R> list;
-                    synchronized (this) {
-                        // 可以用promised吞掉非promised的，但不能反过来，因为非promised可能因为被挤出去而cancel.
-                        list = new LinkedList<>(executingPromised.values());
-                    }
-                    for (R r : list) {
-                        drop$(waiting, r);
-                    }
-                    synchronized (this) {
-                        list = new LinkedList<>(executing.values());
-                    }
-                    for (R r : list) {
-                        drop$(waiting, r);
-                    }
+                    // 可以用promised吞掉非promised的，但不能反过来，因为非promised可能因为被挤出去而cancel.
+                    prune$(waiting, inflight);
                     if (waiting.empty()) {
-                        throttle.counter.drop(throttle);
+                        throttle.counter.unhold(throttle);
                         empty &= true;
                     } else {
-                        final Stack<R> stack = new Stack<>();
-                        R range;
-                        while ((range = take$(waiting)) != null) {
-                            stack.push(merge$(waiting, range));
-                        }
-                        if (stack.empty()) {
-                            throttle.counter.drop(throttle);
+                        // 按优先级从高到低（即越晚输入的越靠前）。
+                        final List<R> merged = drain$(waiting);
+                        if (merged.isEmpty()) {
+                            throttle.counter.unhold(throttle);
                             empty &= true;
                         } else {
+                            // 本轮执行的排在前面，其余的排在后面。同批执行的不可以有交集。
+                            int admitted = 1;
+                            if (batch) {
+                                for (int i = 1; i < merged.size(); i++) {
+                                    final R r = merged.get(i);
+                                    boolean overlap = false;
+                                    for (int j = 0; j < admitted && !overlap; j++) {
+                                        overlap = merged.get(j).overlap(r);
+                                    }
+                                    if (overlap) continue;
+                                    if (!throttle.counter.hold(throttle)) break;
+                                    merged.add(admitted++, merged.remove(i));
+                                }
+                            }
                             // 由于throttle.pushRequest(this)方法确保了一次仅有一个线程进入本方法，
                             // 因此这里尽可能缩小了同步块范围。
-                            final Set<Map.Entry<String, R>> set;
-                            synchronized (this) {
-                                set = new LinkedHashSet<>(executing.entrySet());
-                            }
-                            for (Map.Entry<String, R> entry : set) {
-                                limiter.remove(entry.getKey());
-                            }
-                            while (stack.size() > 1) {
-                                final R r = stack.pop();
-                                limiter.put(r.unique(), r); // 先放进去，以便后面能挤出来。
-                            }
-                            range = stack.pop();
-                            final String unique = range.unique();
-                            synchronized (this) {
-                                executing.put(unique, range);
-                            }
-                            for (Map.Entry<String, R> entry : set) {
-                                limiter.put(entry.getKey(), entry.getValue()); // 挤出去
-                            }
-                            limiter.put(unique, range);
-                            for (Map.Entry<String, R> entry : set) {
-                                limiter.remove(entry.getKey()); // 删除，剩下的就是没有挤完的。
+                            final int capacity = Math.max(1, throttle.counter.limit()); // 跟随自适应的并发上限
+                            if (limiter.maxSize() != capacity) limiter.resize(capacity);
+                            try {
+                                final Set<Map.Entry<R, R>> set;
+                                synchronized (this) {
+                                    set = new LinkedHashSet<>();
+                                    if (!prefetch.isEmpty()) { // 预取的最先被挤出去
+                                        for (Map.Entry<R, R> entry : executing.entrySet()) {
+                                            if (prefetch.contains(entry.getKey())) set.add(entry);
+                                        }
+                                    }
+                                    final Evictor<TAG> ev = throttle.evictor;
+                                    if (ev != null && !eviction.isEmpty()) eviction.rank(ev, tag, executing, set);
+                                    set.addAll(executing.entrySet());
+                                }
+                                for (Map.Entry<R, R> entry : set) {
+                                    limiter.remove(entry.getKey());
+                                }
+                                for (int i = merged.size() - 1; i >= admitted; i--) {
+                                    final R r = merged.get(i);
+                                    limiter.put(r, r); // 先放进去，以便后面能挤出来。
+                                }
+                                for (int i = admitted - 1; i >= 0; i--) {
+                                    track$(merged.get(i), false);
+                                }
+                                for (Map.Entry<R, R> entry : set) {
+                                    limiter.put(entry.getKey(), entry.getValue()); // 挤出去
+                                }
+                                for (int i = admitted - 1; i >= 0; i--) {
+                                    final R r = merged.get(i);
+                                    limiter.put(r, r);
+                                }
+                                for (Map.Entry<R, R> entry : set) {
+                                    limiter.remove(entry.getKey()); // 删除，剩下的就是没有挤完的。
+                                }
+                                for (int i = 0; i < admitted; i++) {
+                                    limiter.remove(merged.get(i));
+                                }
+                            } finally {
+                                eviction.clearSpared();
                             }
-                            limiter.remove(unique);
-                            for (Map.Entry<String, R> entry : limiter.snapshot().entrySet()) {
+                            for (Map.Entry<R, R> entry : limiter.snapshot().entrySet()) {
                                 synchronized (this) {
                                     waiting.push(entry.getValue()); // 没有挤完的，进入waiting.
                                 }
                                 limiter.remove(entry.getKey());
                             }
-                            postExec(range, false);
+                            for (int i = 0; i < admitted; i++) {
+                                final R r = merged.get(i);
+                                ranges.add(r);
+                                onDones.add(onDone(r, false));
+                            }
                             empty &= waiting.empty();
                         }
                     }
                 }
-            } else return true;
+            } else {
+                if (held == Counter.FULL) evict$();
+                empty = true;
+            }
+            // 限速时不预取，以免预取占用发放许可而推迟真正的输入。
+            if (empty && throttle.prefetch > 0 && !throttle.counter.rated()) prefetch$(ranges, onDones);
+            resize$();
+            flush(); // 被挤出局的
+            throttle.relieve(this);
+            final ThrottleListener<TAG> l = throttle.listener;
+            if (l != null) report(l, ranges);
+            else coalescer.absorbed = 0;
+            if (!ranges.isEmpty()) {
+                dispatched += ranges.size();
+                postExec(ranges, onDones);
+            }
             return empty;
         }
 
-        private void postExec(R range, boolean promised) {
-            final Runnable ending;
-            if (promised) {
-                ending = new Runnable() {
-                    @Override
-                    public void run() {
-                        synchronized (Tagged.this) {
-                            executingPromised.remove(range.unique());
-                            cancel$(executing, range, true);
-                            drop$(waitingPromised, range);
-                            drop$(waiting, range);
-                        }
-                    }
-                };
-            } else {
-                ending = new Runnable() {
-                    @Override
-                    public void run() {
-                        synchronized (Tagged.this) {
-                            executing.remove(range.unique());
-                            cancel$(executingPromised, range, true);
-                            drop$(waitingPromised, range);
-                            drop$(waiting, range);
-                        }
-                    }
-                };
+        private void report(ThrottleListener<TAG> l, List<R> ranges) {
+            if (coalescer.absorbed > 0) {
+                l.onMerge(tag, coalescer.absorbed);
+                coalescer.absorbed = 0;
             }
-            final Runnable onDone = new Runnable() {    // 保证只执行一次
-                final AtomicBoolean done = new AtomicBoolean(false);
+            if (!ranges.isEmpty()) stamps.onDispatch(l, tag, ranges);
+            sizes(l);
+        }
 
-                @Override
-                public void run() {
-                    if (done.getAndSet(true)) return;
-                    ending.run();
-                    throttle.counter.drop(throttle);
-                    pushRequest();
-                    releaseWhenIdle();
+        private void sizes(ThrottleListener<TAG> l) {
+            final int waitingSize, executingSize;
+            synchronized (this) {
+                waitingSize = waitingPromised.size() + waiting.size();
+                executingSize = executingPromised.size() + executing.size();
+            }
+            l.onSizes(tag, waitingSize, executingSize);
+        }
+
+        private Runnable onDone(R range, boolean promised) {
+            final Done done = new Done(range, promised);
+            if (!promised && throttle.evictor != null) {
+                synchronized (this) {
+                    eviction.onDispatch(range, done);
                 }
-            };
+            }
+            return done;
+        }
+
+        /**
+         * 任务执行完成的回调，无论成功还是失败，保证只执行一次。
+         */
+        private final class Done extends Eviction.Run implements Runnable, Result {
+            final AtomicBoolean done = new AtomicBoolean(false);
+            final R range;
+            final boolean promised;
+
+            /**
+             * 发起的时间仅用于{@link Counter#setAdaptive(int, double) 自适应}并发上限、{@link ThrottleListener#onComplete(Object,
+             * long, boolean) 执行时间}统计和{@link AbsThrottle#setEvictor(Evictor) 挤出策略}，都不需要时为0.
+             */
+            Done(R range, boolean promised) {
+                super(throttle.counter.adaptive() || throttle.listener != null || throttle.evictor != null ? System.nanoTime() : 0);
+                this.range = range;
+                this.promised = promised;
+            }
+
+            @Override
+            public void run() {
+                end(false, null, null);
+            }
+
+            @Override
+            public void complete$(Object result) {
+                end(true, result, null);
+            }
+
+            @Override
+            public void fail$(Throwable e) {
+                end(false, null, e);
+            }
+
+            private void end(boolean success, Object result, Throwable e) {
+                if (done.getAndSet(true)) return;
+                final boolean cancelled, wasted;
+                final Journal<D, R, TAG> j = throttle.journal;
+                boolean journal = false;
+                synchronized (Tagged.this) {
+                    cancelled = Tagged.this.cancelled.remove(range);
+                    eviction.onDone(range, this);
+                    // 预取的被取消或失败了，就是浪费。
+                    wasted = prefetch.onDone(range, cancelled || !success && e != null);
+                    // 非promised的范围完成时也会删掉与之相交的等待中的promised范围。
+                    if (j != null) journal = promised || overlap$(waitingPromised, range);
+                    // 普通的任务执行者没有区分成功失败，只要不是被取消的都算成功。
+                    if (!cancelled && (success || e == null)) fresh.onDone(range, throttle.freshness);
+                    if (success) resolve$(range, result);
+                    else reject$(range, true, e == null ? new CancellationException() : e);
+                    untrack$(range, promised);
+                    cancel$(promised ? executing : executingPromised, range, true);
+                    drop$(waitingPromised, range);
+                    drop$(waiting, range);
+                    resize$();
+                }
+                if (journal) j.done(tag, range);
+                flush();
+                throttle.relieve(Tagged.this);
+                final ThrottleListener<TAG> l = throttle.listener;
+                if (l != null) {
+                    if (wasted) l.onPrefetched(tag, false);
+                    stamps.unstamp(range, false); // 被本范围覆盖而没有单独派发的
+                    if (started != 0 && !cancelled) l.onComplete(tag, System.nanoTime() - started, success || e == null);
+                    sizes(l);
+                }
+                if (started != 0 && !cancelled) throttle.counter.sample(throttle, started, success || e == null);
+                throttle.counter.drop(throttle);
+                pushRequest();
+                releaseWhenIdle();
+            }
+        }
+
+        private void postExec(List<R> ranges, List<Runnable> onDones) {
             try {
-                throttle.executor.execAsync$(range, tag, onDone);
+                if (ranges.size() == 1) throttle.executor.execAsync$(ranges.get(0), tag, onDones.get(0));
+                else throttle.executor.execBatchAsync$(ranges, tag, onDones);
             } catch (Exception e) {
-                onDone.run();   // 注意不在finally条件下执行
+                for (Runnable onDone : onDones) ((Result) onDone).fail$(e);   // 注意不在finally条件下执行
                 throw e;
             }
         }
@@ -527,6 +1428,33 @@ abstract class AbsThrottle<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, T
         }
     }
 
+    /**
+     * 带结果地结束任务，同onDone一样只有第一次调用有效。
+     */
+    interface Result {
+        void complete$(Object result);
+
+        void fail$(Throwable e);
+    }
+
+    /**
+     * 把{@link AbsExecutor#execAsync$(AbsSorter.AbsR, TAG, Runnable)}的<code>onDone</code>包装为{@link Completion}.
+     */
+    static <V> Completion<V> completion(Runnable onDone) {
+        final Result result = (Result) onDone;
+        return new Completion<V>() {
+            @Override
+            public void complete(V value) {
+                result.complete$(value);
+            }
+
+            @Override
+            public void fail(Throwable e) {
+                result.fail$(e);
+            }
+        };
+    }
+
     abstract static class AbsExecutor<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, TAG> {
         /**
          * 异步发起任务调用。
@@ -537,6 +1465,26 @@ abstract class AbsThrottle<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, T
          */
         abstract void execAsync$(R range, TAG tag, Runnable onDone);
 
+        /**
+         * 是否支持{@link #execBatchAsync$(List, TAG, List) 批量}发起任务调用。
+         */
+        boolean batch$() {
+            return false;
+        }
+
+        /**
+         * 批量异步发起任务调用，仅当{@link #batch$()}时才会被调用。
+         *
+         * @param ranges  范围参数列表，每个同{@link #put(AbsSorter.AbsR, TAG, boolean)}的第一个参数。
+         * @param tag     标签，同{@link #put(AbsSorter.AbsR, TAG, boolean)}的第二个参数。
+         * @param onDones 与<code>ranges</code>一一对应，每个范围执行完成后的回调，无论成功还是失败。
+         */
+        void execBatchAsync$(List<R> ranges, TAG tag, List<Runnable> onDones) {
+            for (int i = 0; i < ranges.size(); i++) {
+                execAsync$(ranges.get(i), tag, onDones.get(i));
+            }
+        }
+
         /**
          * 取消任务。
          *
@@ -544,5 +1492,38 @@ abstract class AbsThrottle<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, T
          * @param tag   标签，同{@link #put(AbsSorter.AbsR, TAG, boolean)}的第二个参数。
          */
         abstract void cancel$(R range, TAG tag);
+
+        /**
+         * 等待中的范围过期，已被清除而不会再执行，见{@link #setExpiry(long, TimeUnit)}.
+         *
+         * @param range 范围参数，为某次输入中尚未派发的部分。
+         * @param tag   标签，同{@link #put(AbsSorter.AbsR, TAG, boolean)}的第二个参数。
+         */
+        void expired$(R range, TAG tag) {
+        }
+
+        /**
+         * 是否以{@link Completion}回传结果，从而支持{@link #submit(AbsSorter.AbsR, TAG, boolean) submit}.
+         */
+        boolean results$() {
+            return false;
+        }
+
+        /**
+         * 从<code>range</code>的执行结果中切出<code>part</code>部分的结果。
+         */
+        Object slice$(Object result, R range, R part) {
+            return result;
+        }
+
+        /**
+         * 把<code>range</code>的各部分的结果合并为<code>range</code>的结果。
+         *
+         * @param parts   按从小到大的顺序，合起来正好是<code>range</code>.
+         * @param results 与<code>parts</code>一一对应。
+         */
+        Object join$(R range, List<R> parts, List<Object> results) {
+            return results.get(0);
+        }
     }
 }
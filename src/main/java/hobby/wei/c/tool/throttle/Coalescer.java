@@ -0,0 +1,428 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static scala.Predef.require;
+
+/**
+ * 派发前的合并：从等待栈顶取出一个范围，把与之相交或相邻的等待中范围滚雪球般并入，直到<code>limit</code>个为止。
+ * <p>
+ * {@link #merge(List, AbsSorter.AbsR)}逐遍扫描整个列表，每并入一次就再来一遍；{@link #drain(Stack)}则把整个栈
+ * 按{@link AbsSorter.AbsR#from() from}排序一次，每一步只在当前范围附近的窗口中找下一个要处理的，结果与反复
+ * {@link #take(Stack)}再{@link #merge(List, AbsSorter.AbsR)}直到栈空完全相同。合并时直接计算端点，不经过分拣器。
+ * <p>
+ * 从等待栈中减去范围也是这样：{@link #drop(List, AbsSorter.AbsR)}减去一个，{@link #prune(List, AbsSorter, List)}
+ * 则一遍扫描就减去区间索引中的全部，结果与对其中的范围逐个drop相同。
+ * <p>
+ * 非线程安全，由所属的分类同步。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+final class Coalescer<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
+    private final AbsSorter<D, R> sorter; // 用于创建范围，以及drop时切分
+    private final int limit;
+    private final boolean minFirst;
+    /**
+     * 合并吸收的范围数，由调用方取走并清零。
+     */
+    int absorbed;
+    /**
+     * 最近一次{@link #join(AbsSorter.AbsR, AbsSorter.AbsR)}或{@link #cut(Discrete, Discrete, boolean)}的结果：
+     * 要执行的部分和留下的部分（可能为null）。
+     */
+    private R favor, rest;
+
+    Coalescer(AbsSorter<D, R> sorter, int limit, boolean minFirst) {
+        this.sorter = sorter;
+        this.limit = limit;
+        this.minFirst = minFirst;
+    }
+
+    /**
+     * 弹出栈顶，超过<code>limit</code>的截断，剩下的再压回栈顶。
+     */
+    R take(Stack<R> stack) {
+        if (stack.empty()) return null;
+        final R range = stack.pop();
+        if (range.delta() + 1 <= limit) return range;
+        cut(range.from(), range.to(), minFirst);
+        stack.push(rest);
+        return favor;
+    }
+
+    R merge(List<R> list, R range) {
+        // 例如：list[[9, 20], [6], [11], [3], [7], [8], [12]], range[10],
+        // 如果仅一遍：则结果是list[[6], [11], [3], [7], [8], [12]], return[9, 20]
+        // 显然应该多遍，但到底多少遍？那就每join一次就再来一遍。
+        while (true) {
+            boolean loop = false;
+            for (int i = list.size() - 1; i >= 0; i--) {
+                final int len = range.delta() + 1;
+                require(len <= limit);
+                if (len == limit) {
+                    // drop$(list, i, range); // 全部drop, 而不是从i开始drop, 原因见上面示例。
+                    // return range;
+                    break;
+                }
+                final R r = list.get(i);
+                if (range.contains(r)) {
+                    list.remove(i); // 合并的结果就是删掉
+                    absorbed++;
+                } else if (r.joinable(range)) { // 是否可合并
+                    join(range, r);
+                    range = favor; // 滚雪球把range滚大
+                    if (rest == null) {
+                        list.remove(i); // 已经被吸收，那么就删掉
+                        absorbed++;
+                    } else list.set(i, rest); // 替换掉
+                    loop = true;
+                    // break; // 基于上面的测试数据，如果break则循环次数更多。
+                }
+            }
+            if (!loop) break;
+        }
+        return range;
+    }
+
+    /**
+     * 从列表中减去<code>range</code>：被包含的删掉，部分相交的切开之后留在原位置。
+     */
+    void drop(List<R> list, R range) {
+        for (int i = list.size() - 1; i >= 0; i--) {
+            final R r = list.get(i);
+            if (r.overlap(range)) { // 有交集
+                list.remove(i);   // 先删掉，再插入
+                if (range.contains(r)) { // r在drop的范围内
+                    // nothing...
+                } else { // 需要drop操作
+                    require(!sorter.hasMore());
+                    sorter.put(r);
+                    sorter.drop(range);
+                    R rd;
+                    while ((rd = sorter.takeSerial(null, Integer.MAX_VALUE, minFirst)) != null) {
+                        list.add(i, rd); // 注意index不变，则先take出来的，会往stack顶部方向挤压。
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 从列表中减去<code>index</code>中的所有范围，仅需一遍扫描。结果与逐个对其中的范围执行{@link #drop(List,
+     * AbsSorter.AbsR)}相同：被切开的部分留在原位置，且先take出来的更靠近栈顶。
+     *
+     * @param removed 不为null则收集被减去的部分。
+     */
+    void prune(List<R> list, AbsSorter<D, R> index, List<R> removed) {
+        if (list.isEmpty() || !index.hasMore()) return;
+        final List<R> result = new ArrayList<>(list.size());
+        final List<R> pieces = new ArrayList<>();
+        boolean changed = false;
+        for (R r : list) {
+            if (!index.subtract(r, pieces)) {
+                result.add(r);
+                continue;
+            }
+            changed = true;
+            if (removed != null) index.intersect(r, removed);
+            if (minFirst) {
+                for (int i = pieces.size() - 1; i >= 0; i--) result.add(pieces.get(i));
+            } else result.addAll(pieces);
+            pieces.clear();
+        }
+        if (changed) {
+            list.clear();
+            list.addAll(result);
+        }
+    }
+
+    /**
+     * 不同的正在执行的范围之间可能有交集，从区间索引中删除<code>range</code>之后，要把与之相交的其它范围补回来。
+     *
+     * @param ranges 仍在执行的范围。
+     */
+    static <D extends Discrete<D>, R extends AbsSorter.AbsR<D>> void reindex(AbsSorter<D, R> index, Collection<R> ranges, R range) {
+        for (R r : ranges) {
+            if (r.overlap(range)) index.put(r);
+        }
+    }
+
+    /**
+     * 同反复{@link #take(Stack)}再{@link #merge(List, AbsSorter.AbsR)}直到栈空，但总共只排序一次。
+     * <p>
+     * 逐遍扫描时，与当前范围既不相交也不相邻的元素什么也不做，因此只需按原来的次序（栈顶往下，每并入一次就从头再来）
+     * 依次处理那些相关的。当前范围只会变大，相关的一直相关，因此每次合并开始时找出相关的，之后范围每变大一次只需
+     * 找出端点落在新增部分中的，都按栈中位置记下，下一个要处理的就是其中位置在本遍进度之下且最靠近栈顶的。见{@link Index}.
+     *
+     * @return 按优先级从高到低排列的合并结果。栈被清空。
+     */
+    List<R> drain(Stack<R> stack) {
+        final List<R> merged = new ArrayList<>();
+        if (stack.empty()) return merged;
+        final Index index = new Index();
+        for (R r : stack) { // 从栈底到栈顶
+            index.add(r);
+        }
+        stack.clear();
+        Node top;
+        while ((top = index.pop()) != null) {
+            R range = top.range;
+            if (range.delta() + 1 > limit) { // 同take()
+                cut(range.from(), range.to(), minFirst);
+                range = favor;
+                index.add(rest);
+            }
+            merged.add(sweep(index, range));
+        }
+        return merged;
+    }
+
+    private R sweep(Index index, R range) {
+        long pass = Long.MAX_VALUE; // 本遍已处理到的位置（不含）
+        boolean loop = false;
+        index.begin(range);
+        while (true) {
+            final int len = range.delta() + 1;
+            require(len <= limit);
+            if (len == limit) break;
+            final Node node = index.next(pass);
+            if (node == null) { // 一遍结束
+                if (!loop) break;
+                loop = false;
+                pass = Long.MAX_VALUE;
+                continue;
+            }
+            pass = node.order;
+            final R r = node.range;
+            if (range.contains(r)) {
+                index.remove(node);
+                absorbed++;
+            } else {
+                join(range, r);
+                final R prev = range;
+                range = favor;
+                if (rest == null) {
+                    index.remove(node);
+                    absorbed++;
+                } else index.replace(node, rest);
+                if (range.delta() + 1 < limit) index.grow(prev, range);
+                loop = true;
+            }
+        }
+        return range;
+    }
+
+    /**
+     * 合并两个可合并（而不是包含）的范围：总长不超过<code>limit</code>则全部并入；否则从<code>minFirst</code>一头截取，
+     * 但<code>range</code>内的任何元素都是优先的，不可以留下来，那样的话换一头再截。
+     */
+    private void join(R range, R r) {
+        final D from = range.from().delta(r.from()) <= 0 ? range.from() : r.from();
+        final D to = range.to().delta(r.to()) >= 0 ? range.to() : r.to();
+        if (to.delta(from) + 1 <= limit) {
+            favor = from == range.from() && to == range.to() ? range : from == r.from() && to == r.to() ? r : sorter.create(from, to);
+            rest = null;
+            return;
+        }
+        cut(from, to, minFirst);
+        if (range.contains(rest)) {
+            cut(from, to, !/*换一头*/minFirst);
+            require(!range.contains(rest));
+        }
+    }
+
+    /**
+     * 把长度超过<code>limit</code>的<code>[from, to]</code>从一头截取<code>limit</code>个，与{@link
+     * AbsSorter#takeSerial(Discrete, int, boolean)}相同。
+     */
+    private void cut(D from, D to, boolean minFirst) {
+        if (minFirst) {
+            final D end = from.offset(limit - 1);
+            favor = sorter.create(from, end);
+            rest = sorter.create(end.offset(1), to);
+        } else {
+            final D start = to.offset(-(limit - 1));
+            favor = sorter.create(start, to);
+            rest = sorter.create(from, start.offset(-1));
+        }
+    }
+
+    private final class Node {
+        final long order; // 在栈中的位置，越大越靠近栈顶
+        R range;
+        D from, to;
+        long seen; // 最近一次被记为相关的那次合并
+
+        Node(long order, R range) {
+            this.order = order;
+            this.range = range;
+            if (range != null) {
+                this.from = range.from();
+                this.to = range.to();
+            }
+        }
+    }
+
+    /**
+     * 等待栈的索引：按栈中位置，按起点、终点（相同的再按位置），以及比<code>limit</code>长的元素。
+     * <p>
+     * 与当前范围<code>[from, to]</code>相关的元素，要么端点在<code>[from - 1, to + 1]</code>之内，从按起点或终点排序的
+     * 索引中找；要么整个覆盖它，不比<code>limit</code>长的起点必在<code>from - limit</code>之后，再就是长的（很少）。
+     * 每次合并中，每个元素至多被记下一次。
+     */
+    private final class Index {
+        private final TreeMap<Long, Node> stack = new TreeMap<>();
+        private final TreeSet<Node> byFrom = new TreeSet<>(new Comparator<Node>() {
+            @Override
+            public int compare(Node left, Node right) {
+                final int delta = left.from.delta(right.from);
+                return delta != 0 ? (delta > 0 ? 1 : -1) : Long.compare(left.order, right.order);
+            }
+        });
+        private final TreeSet<Node> byTo = new TreeSet<>(new Comparator<Node>() {
+            @Override
+            public int compare(Node left, Node right) {
+                final int delta = left.to.delta(right.to);
+                return delta != 0 ? (delta > 0 ? 1 : -1) : Long.compare(left.order, right.order);
+            }
+        });
+        private final Set<Node> longs = new HashSet<>();
+        /**
+         * 本次合并中已知相关的，按栈中位置。
+         */
+        private final TreeMap<Long, Node> related = new TreeMap<>();
+        private final Node probe = new Node(Long.MIN_VALUE, null);
+        private long order, sweep;
+
+        void add(R range) {
+            final Node node = new Node(order++, range);
+            stack.put(node.order, node);
+            index(node);
+        }
+
+        Node pop() {
+            final Map.Entry<Long, Node> entry = stack.pollLastEntry();
+            if (entry == null) return null;
+            unindex(entry.getValue());
+            return entry.getValue();
+        }
+
+        void remove(Node node) {
+            stack.remove(node.order);
+            unindex(node);
+        }
+
+        void replace(Node node, R range) {
+            unindex(node);
+            node.range = range;
+            node.from = range.from();
+            node.to = range.to();
+            index(node);
+        }
+
+        private void index(Node node) {
+            byFrom.add(node);
+            byTo.add(node);
+            if (node.range.delta() + 1 > limit) longs.add(node);
+        }
+
+        private void unindex(Node node) {
+            byFrom.remove(node);
+            byTo.remove(node);
+            longs.remove(node);
+            related.remove(node.order);
+        }
+
+        /**
+         * 开始以<code>range</code>为起点的一次合并，记下与之相关的。
+         */
+        void begin(R range) {
+            related.clear();
+            sweep++;
+            final D lo = offset(range.from(), -1), hi = offset(range.to(), 1);
+            collect(byFrom, true, lo, hi, range);
+            collect(byTo, false, lo, hi, range);
+            probe.from = lo;
+            for (Node node : byFrom.headSet(probe, false).descendingSet()) { // 覆盖它的
+                if (range.from().delta(node.from) >= limit) break;
+                relate(node, range);
+            }
+            for (Node node : longs) relate(node, range);
+        }
+
+        /**
+         * 当前范围由<code>prev</code>变大为<code>range</code>, 记下端点落在新增部分中的。
+         */
+        void grow(R prev, R range) {
+            if (range.from().delta(prev.from()) < 0) {
+                final D lo = range.from().offset(-1), hi = prev.from().offset(-2);
+                collect(byFrom, true, lo, hi, range);
+                collect(byTo, false, lo, hi, range);
+            }
+            if (range.to().delta(prev.to()) > 0) {
+                final D lo = prev.to().offset(2), hi = range.to().offset(1);
+                collect(byFrom, true, lo, hi, range);
+                collect(byTo, false, lo, hi, range);
+            }
+        }
+
+        /**
+         * @return 已知相关的元素中，位置在<code>pass</code>之下且最靠近栈顶的。
+         */
+        Node next(long pass) {
+            final Map.Entry<Long, Node> entry = related.lowerEntry(pass);
+            return entry == null ? null : entry.getValue();
+        }
+
+        /**
+         * 记下起点（或终点）在<code>[lo, hi]</code>之内的。
+         */
+        private void collect(TreeSet<Node> set, boolean byFrom, D lo, D hi, R range) {
+            probe.from = probe.to = lo;
+            for (Node node : set.tailSet(probe, true)) {
+                if ((byFrom ? node.from : node.to).delta(hi) > 0) break;
+                relate(node, range);
+            }
+        }
+
+        private void relate(Node node, R range) {
+            if (node.seen == sweep || !range.contains(node.range) && !node.range.joinable(range)) return;
+            node.seen = sweep;
+            related.put(node.order, node);
+        }
+    }
+
+    /**
+     * 无法连续的离散数据（如{@link Linkless}）没有偏移，也不会相邻。
+     */
+    private static <D extends Discrete<D>> D offset(D d, int delta) {
+        final D o = d.offset(delta);
+        return o == null ? d : o;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 值的序列化，用于日志中的标签和范围参数，见各控制器的<code>openJournal</code>方法。
+ *
+ * @param <T> 值的类型。
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public interface Codec<T> {
+    /**
+     * @param value 不为null（null标签由日志自己处理）。
+     */
+    void write(T value, DataOutput out) throws IOException;
+
+    T read(DataInput in) throws IOException;
+}
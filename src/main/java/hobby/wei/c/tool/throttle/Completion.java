@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+/**
+ * 带结果的任务完成回调，见{@link ThrottleR.ResultExecutor}, {@link ThrottleInt.ResultExecutor}和{@link ThrottleO.ResultExecutor}.
+ * <p>
+ * 两个方法都相当于普通任务执行者的<code>onDone</code>, 且只有第一次调用有效；任务被取消时应调用{@link #fail(Throwable)}.
+ *
+ * @param <V> 结果类型。
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public interface Completion<V> {
+    /**
+     * 任务成功，结果会分发给等待该范围（或其中一部分）的各个{@link java.util.concurrent.CompletableFuture}.
+     */
+    void complete(V result);
+
+    /**
+     * 任务失败或被取消，等待该范围中尚未完成的部分的{@link java.util.concurrent.CompletableFuture}都以此异常结束。
+     */
+    void fail(Throwable e);
+}
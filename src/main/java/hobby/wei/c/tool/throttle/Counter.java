@@ -16,33 +16,200 @@
 
 package hobby.wei.c.tool.throttle;
 
-import java.util.Map;
-import java.util.WeakHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * {@link AbsThrottle Throttle}中正在执行任务的计数器。
+ * <p>
+ * 每个{@link #register(AbsThrottle) 注册}了的{@link AbsThrottle Throttle}都会留一个坑，因此实际占用的名额为各自
+ * <code>max(正在执行数, 是否注册 ? 1 : 0)</code>之和。该总数与各{@link AbsThrottle Throttle}自己的计数都用CAS维护，
+ * {@link #hold(AbsThrottle)}、{@link #drop(AbsThrottle)}均为O(1)且无锁。
+ * <p>
+ * 还可以{@link #setRate(double, int) 限制速率}（每秒发起的任务数）：按GCRA(等同于令牌桶)计算，同样无锁。速率不足时，
+ * {@link #hold(AbsThrottle)}失败，并在可以发起时再让该{@link AbsThrottle Throttle}重新push, 而不是等下一个输入或完成。
+ * <p>
+ * 并发上限也可以{@link #setAdaptive(int, double) 自适应}：根据各任务从发起到完成的延迟，按AIMD(加性增、乘性减)在
+ * <code>[minReqCount, maxReqCount]</code>之间调整{@link #limit() 当前上限}。
+ * <p>
+ * 同一台机器上的多个进程要共用并发名额，见{@link SharedCounter}.
  *
  * @author Wei Chou(weichou2010@gmail.com)
  * @version 1.0, 18/08/2016
  */
 public class Counter {
-    private final Map<AbsThrottle, BI> selfCountMap = new WeakHashMap<>();
+    private static final int REGISTERED = 1, ONE = 2;
+    /**
+     * {@link #hold$(AbsThrottle)}的结果：领到了名额；名额已满（或未注册）；领到了名额但速率许可不足，已退回并安排稍后重新push.
+     */
+    static final int HELD = 0, FULL = 1, RATED = 2;
+    private static final long RTT_WINDOW = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * 已占用的名额（包括注册时留的坑）。
+     */
+    private final AtomicInteger occupied = new AtomicInteger(0);
+    /**
+     * 正在执行的任务数。
+     */
+    private final AtomicInteger running = new AtomicInteger(0);
+    /**
+     * 并发上限。自适应时为{@link #limit() 当前上限}的最大值。
+     */
     public final int maxReqCount;
+    /**
+     * 当前的并发上限，见{@link #setAdaptive(int, double)}.
+     */
+    private final AtomicInteger limit;
+    /**
+     * 自适应的下限，0表示不自适应；以及延迟超过基准多少倍视为过载。
+     */
+    private volatile int minLimit;
+    private volatile double overload = 2;
+    /**
+     * 自上次加性增之后的正常样本数，以及上次乘性减的时间（在此之前发起的任务不再重复减）。
+     */
+    private final AtomicInteger acks = new AtomicInteger(0);
+    private final AtomicLong decreasedAt = new AtomicLong(System.nanoTime());
+    /**
+     * GCRA的理论到达时间（{@link System#nanoTime()}）、发放间隔和允许的突发提前量（纳秒），间隔为0表示不限速。
+     */
+    private final AtomicLong tat = new AtomicLong(0);
+    private volatile long interval, tolerance;
 
     public Counter(int maxReqCount) {
         this.maxReqCount = maxReqCount;
+        this.limit = new AtomicInteger(maxReqCount);
+    }
+
+    /**
+     * 每个{@link AbsThrottle Throttle}自己的计数，由其持有。
+     */
+    static final class Slot {
+        /**
+         * <code>count << 1 | registered</code>, 两者须同时变更。
+         */
+        final AtomicInteger state = new AtomicInteger(0);
+        /**
+         * 已安排的因限速而推迟的push, null表示没有。
+         */
+        final AtomicReference<Deferral> deferred = new AtomicReference<>();
+        /**
+         * 该{@link AbsThrottle Throttle}的基准延迟：当前和上一个时间窗口内的最小延迟，0表示还没有样本。
+         */
+        volatile long minRtt, prevMinRtt, windowStart;
+        volatile Counter counter;
     }
 
-    private static class BI {
-        final AtomicBoolean boo = new AtomicBoolean(false);
-        final AtomicInteger count = new AtomicInteger(0);
+    /**
+     * 一次推迟的push: 时间（{@link System#nanoTime()}）及其定时任务。
+     */
+    static final class Deferral {
+        final long at;
+        volatile ScheduledFuture<?> future;
+        volatile boolean cancelled;
+
+        Deferral(long at) {
+            this.at = at;
+        }
+
+        void cancel() {
+            cancelled = true;
+            final ScheduledFuture<?> f = future;
+            if (f != null) f.cancel(false);
+        }
+    }
+
+    /**
+     * @see #setAdaptive(int, double)
+     */
+    public void setAdaptive(int minReqCount) {
+        setAdaptive(minReqCount, 2);
+    }
+
+    /**
+     * 设置自适应并发上限。
+     *
+     * @param minReqCount 下限，<code>&lt;= 0</code>表示不自适应（默认），当前上限恢复为{@link #maxReqCount}.
+     * @param tolerance   任务延迟超过其{@link AbsThrottle Throttle}基准延迟的多少倍视为过载，需大于1.
+     */
+    public void setAdaptive(int minReqCount, double tolerance) {
+        this.overload = Math.max(tolerance, 1);
+        if (minReqCount <= 0) {
+            minLimit = 0;
+            limit.set(maxReqCount);
+        } else minLimit = Math.min(minReqCount, maxReqCount);
+    }
+
+    /**
+     * 当前的并发上限。不自适应时即{@link #maxReqCount}.
+     */
+    public int limit() {
+        return limit.get();
+    }
+
+    boolean adaptive() {
+        return minLimit > 0;
+    }
+
+    /**
+     * 任务完成时的延迟样本。正常且并发已用满一半以上时，每满一个上限数的样本加1；失败或延迟过载时乘以0.9,
+     * 但同一拨（上次减小之前发起的）任务只减一次。
+     *
+     * @param start 任务发起的时间（{@link System#nanoTime()}）。
+     */
+    void sample(AbsThrottle throttle, long start, boolean success) {
+        final int min = minLimit;
+        if (min <= 0) return;
+        final long now = System.nanoTime(), rtt = now - start;
+        final Slot slot = throttle.slot;
+        if (slot.minRtt == 0 || now - slot.windowStart > RTT_WINDOW) { // 换窗口，以便跟随后端的变化
+            slot.prevMinRtt = slot.minRtt;
+            slot.minRtt = Math.max(rtt, 1);
+            slot.windowStart = now;
+        } else if (rtt < slot.minRtt) slot.minRtt = Math.max(rtt, 1);
+        final long prev = slot.prevMinRtt, base = prev != 0 && prev < slot.minRtt ? prev : slot.minRtt;
+        final boolean overload = !success || rtt > base * this.overload;
+        while (true) {
+            final int l = limit.get();
+            final int n;
+            if (overload) {
+                final long at = decreasedAt.get();
+                if (start - at < 0 || !decreasedAt.compareAndSet(at, now)) return;
+                n = Math.max(min, (int) (l * 0.9));
+            } else {
+                if (running.get() * 2 < l) return; // 没用满，无从判断能否再多
+                if (acks.incrementAndGet() < l) return;
+                acks.set(0);
+                n = Math.min(maxReqCount, l + 1);
+            }
+            if (n == l || limit.compareAndSet(l, n)) return;
+        }
+    }
 
-        BI(boolean b, int i) {
-            boo.set(b);
-            count.set(i);
+    /**
+     * 设置速率限制，可随时调整。
+     *
+     * @param permitsPerSecond 每秒最多发起多少个任务，<code>&lt;= 0</code>表示不限速（默认）。
+     * @param burst            允许连续发起的最大个数（闲置一段时间之后）。
+     */
+    public void setRate(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            interval = 0;
+            return;
+        }
+        final long i = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        final long now = System.nanoTime(), prev = interval;
+        if (prev == 0) tat.set(now); // 之前不限速，从现在算起。
+        else { // 已透支的部分按新的间隔折算
+            final long t = tat.get(), ahead = t - now;
+            if (ahead > 0) tat.compareAndSet(t, now + (long) (ahead * ((double) i / prev)));
         }
+        tolerance = (Math.max(burst, 1) - 1) * i;
+        interval = i;
     }
 
     /**
@@ -51,65 +218,165 @@ public class Counter {
      * @param throttle
      */
     void register(AbsThrottle throttle) {
-        final BI value = get(throttle);
-        if (value == null) put(throttle, new BI(true, 0));
-        else value.boo.set(true);
+        final Slot slot = throttle.slot;
+        slot.counter = this;
+        while (true) {
+            final int state = slot.state.get();
+            if ((state & REGISTERED) != 0) return;
+            final boolean idle = state < ONE;
+            if (idle) reserve(); // 先占上，避免其它线程趁机超限。
+            if (slot.state.compareAndSet(state, state | REGISTERED)) return;
+            if (idle) release();
+        }
     }
 
     void unregister(AbsThrottle throttle) {
-        final BI value = get(throttle);
-        if (value != null) {
-            value.boo.set(false);
+        final Slot slot = throttle.slot;
+        if (slot.counter != this) return;
+        while (true) {
+            final int state = slot.state.get();
+            if ((state & REGISTERED) == 0) return;
+            if (slot.state.compareAndSet(state, state & ~REGISTERED)) {
+                if (state < ONE) release();
+                return;
+            }
         }
     }
 
     boolean hold(AbsThrottle throttle) {
-        final BI value = get(throttle);
-        if (value == null) {
+        return hold$(throttle) == HELD;
+    }
+
+    /**
+     * 同{@link #hold(AbsThrottle)}, 但报告没有领到的原因。
+     *
+     * @return {@link #HELD}, {@link #FULL}或{@link #RATED}.
+     */
+    int hold$(AbsThrottle throttle) {
+        final Slot slot = throttle.slot;
+        if (slot.counter != this) {
             throw new IllegalStateException("请先调用register()方法进行注册。");
-        } else if (!value.boo.get()) {
-            return false;
         }
-        synchronized (this) {
-            if (count(false) < maxReqCount || value.count.get() == 0) {
-                value.count.incrementAndGet();
-                return true;
-            } else {
-                return false;
-            }
+        while (true) {
+            final int state = slot.state.get();
+            if ((state & REGISTERED) == 0) return FULL;
+            if (state < ONE) { // 用掉注册时留的坑，总数不变。
+                if (slot.state.compareAndSet(state, state + ONE)) break;
+            } else if (acquire()) {
+                if (slot.state.compareAndSet(state, state + ONE)) break;
+                release();
+            } else return FULL;
+        }
+        running.incrementAndGet();
+        final long wait = permit();
+        if (wait > 0) {
+            drop(throttle);
+            defer(throttle, wait);
+            return RATED;
         }
+        return HELD;
+    }
+
+    /**
+     * 是否设置了{@link #setRate(double, int) 速率限制}。
+     */
+    boolean rated() {
+        return interval > 0;
+    }
+
+    /**
+     * 按GCRA领取一个发放许可。
+     *
+     * @return 0表示领到了，否则为还需等待的纳秒数。
+     */
+    private long permit() {
+        final long interval = this.interval;
+        if (interval <= 0) return 0;
+        while (true) {
+            final long now = System.nanoTime();
+            final long t = tat.get();
+            final long start = t - now > 0 ? t : now;
+            final long wait = start - tolerance - now;
+            if (wait > 0) return wait;
+            if (tat.compareAndSet(t, start + interval)) return 0;
+        }
+    }
+
+    /**
+     * 到时间之后让<code>throttle</code>重新push. 同一个{@link AbsThrottle Throttle}最多只有一个待执行的定时任务：已安排的
+     * 不晚于本次的，什么也不做；否则（如{@link #setRate(double, int) 调快了速率}）用更早的替换掉并取消原来的。
+     */
+    private static void defer(final AbsThrottle throttle, long wait) {
+        final Slot slot = throttle.slot;
+        final Deferral d = new Deferral(System.nanoTime() + wait);
+        Deferral prev;
+        do {
+            prev = slot.deferred.get();
+            if (prev != null && prev.at - d.at <= 0) return;
+        } while (!slot.deferred.compareAndSet(prev, d));
+        if (prev != null) prev.cancel();
+        d.future = Tasks.timer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (slot.deferred.compareAndSet(d, null)) throttle.pushRequest();
+            }
+        }, wait, TimeUnit.NANOSECONDS);
+        if (d.cancelled) d.future.cancel(false); // 赋值之前就被替换了
     }
 
     void drop(AbsThrottle throttle) {
-        final BI value = get(throttle);
-        if (value != null) {
-            synchronized (this) {
-                if (value.count.get() > 0) {
-                    value.count.decrementAndGet();
-                }
+        final Slot slot = throttle.slot;
+        if (slot.counter != this) return;
+        while (true) {
+            final int state = slot.state.get();
+            if (state < ONE) return;
+            if (slot.state.compareAndSet(state, state - ONE)) {
+                running.decrementAndGet();
+                // 最后一个执行完了，若仍是注册的，则名额退回为坑。
+                if (state >= ONE * 2 || (state & REGISTERED) == 0) release();
+                return;
             }
         }
     }
 
-    public int count() {
-        return count(true);
+    /**
+     * 退回{@link #hold(AbsThrottle)}到的名额但并未用来发起任务，速率许可也一并退回。
+     */
+    void unhold(AbsThrottle throttle) {
+        drop(throttle);
+        final long interval = this.interval;
+        if (interval > 0) tat.addAndGet(-interval);
     }
 
-    private synchronized int count(boolean real) {
-        int count = 0;
-        // 虽然get()操作表面上看貌似不会改变size(), 但会触发WeakHashMap.poll()操作以删除被释放掉的keys,
-        // 也就是还是改变了size(), 然后导致了本values()在遍历期间的异常。
-        for (BI bi : selfCountMap.values()) {
-            count += (bi.count.get() > 0 ? bi.count.get() : bi.boo.get() ? real ? 0 : 1 : 0);
+    /**
+     * 在不超过{@link #limit() 当前上限}的前提下占用一个名额。
+     */
+    boolean acquire() {
+        while (true) {
+            final int n = occupied.get();
+            if (n >= limit.get()) return false;
+            if (occupied.compareAndSet(n, n + 1)) return true;
         }
-        return count;
     }
 
-    private synchronized BI get(AbsThrottle throttle) {
-        return selfCountMap.get(throttle);
+    /**
+     * 无条件占用一个名额（注册时留的坑）。
+     */
+    void reserve() {
+        occupied.incrementAndGet();
     }
 
-    private synchronized void put(AbsThrottle throttle, BI bi) {
-        selfCountMap.put(throttle, bi);
+    /**
+     * 退回{@link #acquire()}或{@link #reserve()}占用的名额。
+     */
+    void release() {
+        occupied.decrementAndGet();
+    }
+
+    /**
+     * 本计数器上正在执行的任务数（对于{@link SharedCounter}, 仅为本进程中的）。
+     */
+    public int count() {
+        return running.get();
     }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * 非promised输入的过期时间，见{@link AbsThrottle#setExpiry(long, java.util.concurrent.TimeUnit)}.
+ * <p>
+ * 相交的部分以较晚的输入为准重新计时，因此按离散点记下的是覆盖它的最后一次输入的过期时间：各不相交的分段按{@link
+ * AbsSorter.AbsR#from() from}排列，输入时切掉相交的部分；另按输入的先后排队，{@link #expire(long, AbsSorter)}
+ * 只取出到期的分段（及其被切开的余段），每个分段只被处理常数次。
+ * <p>
+ * 非线程安全，由所属的分类同步。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+final class Deadlines<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
+    private final TreeMap<D, Seg<D>> live = new TreeMap<>(new Comparator<D>() {
+        @Override
+        public int compare(D left, D right) {
+            final int delta = left.delta(right);
+            return delta > 0 ? 1 : delta < 0 ? -1 : 0;
+        }
+    });
+    private final Queue<Seg<D>> queue = new ArrayDeque<>();
+
+    /**
+     * 记下输入<code>range</code>的过期时间。
+     *
+     * @param at 过期时间（{@link System#nanoTime()}）。
+     */
+    void put(R range, long at) {
+        final D from = range.from(), to = range.to();
+        Map.Entry<D, Seg<D>> entry = live.floorEntry(from);
+        if (entry == null || entry.getValue().to.delta(from) < 0) entry = live.ceilingEntry(from);
+        while (entry != null && entry.getKey().delta(to) <= 0) {
+            final Seg<D> seg = entry.getValue();
+            live.remove(entry.getKey());
+            final boolean head = seg.from.delta(from) < 0, tail = seg.to.delta(to) > 0;
+            final D end = seg.to;
+            if (head) {
+                seg.to = from.offset(-1);
+                live.put(seg.from, seg);
+            }
+            if (tail) {
+                if (head) { // 被从中间切开，右边的余段跟随原分段过期
+                    final Seg<D> rest = new Seg<>(to.offset(1), end, seg.at);
+                    rest.next = seg.next;
+                    seg.next = rest;
+                    live.put(rest.from, rest);
+                } else {
+                    seg.from = to.offset(1);
+                    live.put(seg.from, seg);
+                }
+            }
+            if (!head && !tail) seg.alive = false;
+            entry = tail ? null : live.higherEntry(entry.getKey());
+        }
+        final Seg<D> seg = new Seg<>(from, to, at);
+        live.put(from, seg);
+        queue.offer(seg);
+    }
+
+    /**
+     * 是否有到期的（可能已被较晚的输入整个覆盖）。
+     */
+    boolean due(long now) {
+        final Seg<D> seg = queue.peek();
+        return seg != null && seg.at - now <= 0;
+    }
+
+    /**
+     * 把到期的部分放进<code>index</code>.
+     *
+     * @return 是否有到期的。
+     */
+    boolean expire(long now, AbsSorter<D, R> index) {
+        boolean expired = false;
+        Seg<D> seg;
+        while ((seg = queue.peek()) != null && seg.at - now <= 0) {
+            queue.poll();
+            for (Seg<D> s = seg; s != null; s = s.next) {
+                if (!s.alive) continue;
+                s.alive = false;
+                live.remove(s.from);
+                index.put(index.create(s.from, s.to));
+                expired = true;
+            }
+        }
+        return expired;
+    }
+
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    void clear() {
+        live.clear();
+        queue.clear();
+    }
+
+    /**
+     * 一个分段。<code>next</code>串起从同一次输入切开的余段。
+     */
+    private static final class Seg<D> {
+        D from, to;
+        final long at;
+        boolean alive = true;
+        Seg<D> next;
+
+        Seg(D from, D to, long at) {
+            this.from = from;
+            this.to = to;
+            this.at = at;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 一个分类的合并窗口，见{@link AbsThrottle#setDebounce(long, TimeUnit, int)}. 窗口结束时{@link #push()}.
+ * <p>
+ * 线程安全：窗口由CAS打开和结束，输入不需要所属分类的锁。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+abstract class Debounce {
+    /**
+     * 当前打开的窗口（其中的输入个数）。
+     */
+    private final AtomicReference<AtomicInteger> window = new AtomicReference<>();
+
+    /**
+     * 把一个输入计入窗口，没有打开的则打开一个并定时结束。
+     *
+     * @param time      窗口的时长(纳秒)。
+     * @param maxRanges 提前结束窗口的输入个数。
+     * @return true 在窗口内，暂不push, false 未启用。
+     */
+    boolean onPut(long time, int maxRanges) {
+        if (time <= 0) return false;
+        while (true) {
+            AtomicInteger w = window.get();
+            if (w == null) {
+                final AtomicInteger opened = new AtomicInteger(0);
+                if (!window.compareAndSet(null, opened)) continue;
+                w = opened;
+                Tasks.timer().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        close(opened);
+                    }
+                }, time, TimeUnit.NANOSECONDS);
+            }
+            if (w.incrementAndGet() == maxRanges) close(w);
+            return true;
+        }
+    }
+
+    /**
+     * 结束窗口<code>w</code>（若仍是当前的）并push. 之前的输入已入队，窗口打开期间被拦下的push都由这一次完成。
+     */
+    private void close(AtomicInteger w) {
+        if (window.compareAndSet(w, null)) push();
+    }
+
+    abstract void push();
+}
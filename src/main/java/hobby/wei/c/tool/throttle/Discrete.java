@@ -40,9 +40,23 @@ public interface Discrete<T extends Discrete<T>> {
     T offset(int delta);
 
     /**
-     * 唯一标识。
+     * 唯一标识，仅用于{@link Range#toString()}等可读输出。
      *
      * @return
      */
     String unique();
+
+    /**
+     * 必须按值实现：<code>delta() == 0</code>的两个对象必须相等。
+     * <p>
+     * 范围作为键时，其<code>equals()</code>基于{@link #delta(Discrete)}, <code>hashCode()</code>基于两端的本方法。
+     */
+    @Override
+    boolean equals(Object o);
+
+    /**
+     * 必须与{@link #equals(Object)}一致。
+     */
+    @Override
+    int hashCode();
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按{@link Evictor 挤出策略}排定正在执行的非promised范围被挤出局的顺序，见{@link AbsThrottle#setEvictor(Evictor)}.
+ * <p>
+ * {@link #running}由所属的分类同步；{@link #spared}由{@link #rank(Evictor, Object, Map, Set)}写入，在满载队列的
+ * <code>entryRemoved()</code>（包括resize引起的驱逐）中读取，都只在执行pushRequest()的线程中，每轮结束时{@link
+ * #clearSpared() 清空}。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+final class Eviction<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
+    /**
+     * 正在执行的非promised范围的完成回调（记有发起时间和进度）。
+     */
+    private final Map<R, Run> running = new HashMap<>();
+    /**
+     * 本轮不可挤出的。
+     */
+    private final Set<R> spared = new HashSet<>();
+
+    void onDispatch(R range, Run run) {
+        running.put(range, run);
+    }
+
+    void onDone(R range, Run run) {
+        if (!running.isEmpty() && running.get(range) == run) running.remove(range);
+    }
+
+    void progress(R range, float fraction) {
+        final Run run = running.get(range);
+        if (run != null) run.progress = Math.max(0, Math.min(1, fraction));
+    }
+
+    boolean isEmpty() {
+        return running.isEmpty();
+    }
+
+    /**
+     * 把正在执行的（已在<code>set</code>中的预取范围除外）按挤出的代价从小到大加入<code>set</code>, 不可挤出的记入{@link
+     * #spared}.
+     *
+     * @param executing 正在执行的非promised范围，按派发的先后。
+     */
+    <TAG> void rank(Evictor<TAG> ev, TAG tag, Map<R, R> executing, Set<Map.Entry<R, R>> set) {
+        final long now = System.nanoTime();
+        final List<Map.Entry<R, R>> list = new ArrayList<>(executing.size());
+        final Map<R, Long> costs = new HashMap<>();
+        for (Map.Entry<R, R> entry : executing.entrySet()) {
+            if (set.contains(entry)) continue;
+            final R r = entry.getKey();
+            final Run run = running.get(r);
+            final long cost = ev.cost(tag, r.delta() + 1, run == null ? -1 : run.progress,
+                    run == null || run.started == 0 ? 0 : now - run.started);
+            if (cost == Evictor.SPARE) spared.add(r);
+            costs.put(r, cost);
+            list.add(entry);
+        }
+        Collections.sort(list, new Comparator<Map.Entry<R, R>>() { // 稳定的，同样代价的保持原顺序
+            @Override
+            public int compare(Map.Entry<R, R> left, Map.Entry<R, R> right) {
+                return Long.compare(costs.get(left.getKey()), costs.get(right.getKey()));
+            }
+        });
+        set.addAll(list);
+    }
+
+    boolean spared(R range) {
+        return spared.contains(range);
+    }
+
+    void clearSpared() {
+        spared.clear();
+    }
+
+    /**
+     * 一次执行：发起的时间（不需要时为0），以及任务执行者{@link AbsThrottle#progress(AbsSorter.AbsR, Object, float)
+     * 报告}的进度（没有报告过为-1）。
+     */
+    static class Run {
+        final long started;
+        volatile float progress = -1;
+
+        Run(long started) {
+            this.started = started;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+/**
+ * 满载队列超限时，正在执行的范围被挤出局（取消）的代价。见{@link AbsThrottle#setEvictor(Evictor)}.
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public interface Evictor<TAG> {
+    /**
+     * 不可被挤出局。
+     */
+    long SPARE = Long.MAX_VALUE;
+
+    /**
+     * 在派发线程中调用，应尽快返回。
+     *
+     * @param tag          标签，可能为null.
+     * @param size         范围中离散元素的个数（合并之后的）。
+     * @param progress     任务执行者{@link AbsThrottle#progress(AbsSorter.AbsR, Object, float) 报告}的进度
+     *                     <code>[0, 1]</code>, 没有报告过为<code>-1</code>.
+     * @param elapsedNanos 已执行的时间。
+     * @return 代价，越小越先被挤出局；{@link #SPARE}表示不可挤出，让它执行完。
+     */
+    long cost(TAG tag, int size, float progress, long elapsedNanos);
+
+    /**
+     * 按已花费的时间：越久的越后挤出，进度达到<code>spare</code>的不挤出。
+     */
+    class Sunk<TAG> implements Evictor<TAG> {
+        private final float spare;
+
+        /**
+         * @param spare 进度达到多少就不再挤出，<code>&gt; 1</code>表示总是可以挤出。
+         */
+        public Sunk(float spare) {
+            this.spare = spare;
+        }
+
+        @Override
+        public long cost(TAG tag, int size, float progress, long elapsedNanos) {
+            return progress >= spare ? SPARE : elapsedNanos;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import hobby.wei.c.tool.throttle.Stamps.Stamp;
+
+/**
+ * 新鲜期内执行完成的范围，见{@link AbsThrottle#setFreshness(long, java.util.concurrent.TimeUnit)}: 覆盖索引，
+ * 以及按完成先后排列的各范围（用于过期）。
+ * <p>
+ * 非线程安全，由所属的分类同步。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+final class Freshness<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
+    private final AbsSorter<D, R> completed;
+    private final Deque<Stamp<R>> fresh = new ArrayDeque<>();
+
+    Freshness(AbsSorter<D, R> completed) {
+        this.completed = completed;
+    }
+
+    /**
+     * 记录成功完成的范围。
+     *
+     * @param ttl 新鲜期(纳秒)，<code>&lt;= 0</code>则不记录。
+     */
+    void onDone(R range, long ttl) {
+        if (ttl <= 0) return;
+        final long now = System.nanoTime();
+        expire(now);
+        completed.put(range);
+        fresh.offer(new Stamp<>(range, now + ttl));
+    }
+
+    /**
+     * 删除过期的范围，并把与之有交集的仍在新鲜期内的范围补回来。
+     */
+    void expire(long now) {
+        Stamp<R> f;
+        while ((f = fresh.peek()) != null && f.at - now <= 0) {
+            fresh.poll();
+            completed.drop(f.range);
+            for (Stamp<R> g : fresh) {
+                if (g.range.overlap(f.range)) completed.put(g.range);
+            }
+        }
+    }
+
+    void clear() {
+        for (Stamp<R> f : fresh) completed.drop(f.range);
+        fresh.clear();
+    }
+
+    boolean isEmpty() {
+        return fresh.isEmpty();
+    }
+
+    /**
+     * @return 最晚的过期时间。须不{@link #isEmpty() 为空}。
+     */
+    long lastAt() {
+        return fresh.peekLast().at;
+    }
+
+    /**
+     * 是否还有新鲜期内的部分可以减去。
+     */
+    boolean hasMore() {
+        return completed.hasMore();
+    }
+
+    /**
+     * 把<code>range</code>减去新鲜期内的部分之后剩下的放进<code>pieces</code>.
+     *
+     * @return false 没有相交的部分，<code>pieces</code>不变。
+     */
+    boolean subtract(R range, List<R> pieces) {
+        return completed.subtract(range, pieces);
+    }
+
+    /**
+     * 把<code>range</code>与新鲜期内的部分的交集放进<code>out</code>.
+     */
+    void intersect(R range, List<R> out) {
+        completed.intersect(range, out);
+    }
+
+    boolean contains(R range) {
+        return completed.contains(range);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+/**
+ * <code>int</code>离散值。常用的值会被缓存（同{@link Integer#valueOf(int)}），请用{@link #of(int)}获取实例。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public final class IntD implements Discrete<IntD> {
+    private static final int CACHE_LOW = -128, CACHE_HIGH = 4095;
+    private static final IntD[] sCache = new IntD[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < sCache.length; i++) {
+            sCache[i] = new IntD(i + CACHE_LOW);
+        }
+    }
+
+    public final int n;
+
+    private IntD(int n) {
+        this.n = n;
+    }
+
+    public static IntD of(int n) {
+        return n >= CACHE_LOW && n <= CACHE_HIGH ? sCache[n - CACHE_LOW] : new IntD(n);
+    }
+
+    @Override
+    public int delta(IntD d) {
+        return n - d.n;
+    }
+
+    @Override
+    public IntD offset(int delta) {
+        return delta == 0 ? this : of(n + delta);
+    }
+
+    @Override
+    public String unique() {
+        return String.valueOf(n);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof IntD && ((IntD) o).n == n;
+    }
+
+    @Override
+    public int hashCode() {
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(n);
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * promised任务的追加式日志，见{@link AbsThrottle#openJournal$(File, Codec, Codec, boolean)}.
+ * <p>
+ * 记录两种事件：promised的输入，以及使之不再需要执行的完成或丢弃(包括取消)。打开时回放，各分类的输入减去完成即为
+ * 尚未完成的范围（已经合并），压缩为只含这些输入的新文件；运行中文件增长到一定大小也会压缩。
+ * <p>
+ * 每条记录为<code>[长度][CRC32][类型][标签][范围]</code>, 回放到第一条不完整或校验失败的记录为止（崩溃时写了一半的）。
+ * 输入和丢弃须写入文件之后才返回，多个线程同时输入时合并为一次写入（组提交）；完成只需追加，随下一次提交或定时写入，
+ * 丢失了的话重启之后会再执行一次。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+final class Journal<D extends Discrete<D>, R extends AbsSorter.AbsR<D>, TAG> implements Closeable {
+    private static final byte PUT = 1, DONE = 2;
+    private static final int MAX_RECORD = 1 << 24;
+    private static final long COMPACT_MIN = 1 << 20, FLUSH_PERIOD = 1000;
+
+    private final AbsThrottle<D, R, TAG> throttle;
+    private final File file;
+    private final Codec<R> ranges;
+    private final Codec<TAG> tags;
+    private final boolean sync;
+    /**
+     * 尚未写入文件的记录，以及追加和已写入的记录数。由本对象同步。
+     */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+    private final CRC32 crc = new CRC32();
+    private long appended;
+    /**
+     * 由{@link #commitLock}同步。
+     */
+    private final Object commitLock = new Object();
+    private volatile long committed;
+    private FileChannel channel;
+    private long size, compactAt;
+    private Map<TAG, List<R>> recovered;
+    private final ScheduledFuture<?> flusher;
+    private volatile boolean closed;
+
+    /**
+     * 回放并压缩日志，之后可通过{@link #recovered()}取得尚未完成的范围。
+     *
+     * @param sync 是否在每次提交时{@link FileChannel#force(boolean) 刷到磁盘}，否则只保证进程崩溃时不丢失。
+     */
+    Journal(AbsThrottle<D, R, TAG> throttle, File file, Codec<R> ranges, Codec<TAG> tags, boolean sync) throws IOException {
+        this.throttle = throttle;
+        this.file = file;
+        this.ranges = ranges;
+        this.tags = tags;
+        this.sync = sync;
+        synchronized (commitLock) {
+            recovered = compact$();
+        }
+        flusher = Tasks.timer().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (IOException ignored) { // 下一次输入的提交会抛出。
+                }
+            }
+        }, FLUSH_PERIOD, FLUSH_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return 各分类尚未完成的promised范围（已合并，从小到大），只能取一次。
+     */
+    Map<TAG, List<R>> recovered() {
+        synchronized (commitLock) {
+            final Map<TAG, List<R>> result = recovered;
+            recovered = null;
+            return result;
+        }
+    }
+
+    /**
+     * 记录promised的输入，写入文件之后才返回。
+     *
+     * @throws UncheckedIOException 写入失败，该输入不应再执行。
+     */
+    void put(TAG tag, R range) {
+        try {
+            commit(append(PUT, tag, range));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 记录丢弃或取消，写入文件之后才返回。失败则忽略（重启之后再执行一次）。
+     */
+    void drop(TAG tag, R range) {
+        try {
+            commit(append(DONE, tag, range));
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * 记录完成，不等待写入。失败则忽略（重启之后再执行一次）。
+     */
+    void done(TAG tag, R range) {
+        try {
+            append(DONE, tag, range);
+        } catch (IOException ignored) {
+        }
+    }
+
+    void flush() throws IOException {
+        final long seq;
+        synchronized (this) {
+            seq = appended;
+        }
+        commit(seq);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        flusher.cancel(false);
+        try {
+            flush();
+        } finally {
+            synchronized (commitLock) {
+                closed = true;
+                channel.close();
+            }
+        }
+    }
+
+    private synchronized long append(byte type, TAG tag, R range) throws IOException {
+        if (closed) throw new IOException("日志已关闭。");
+        scratch.reset();
+        final DataOutputStream out = new DataOutputStream(scratch);
+        out.writeByte(type);
+        out.writeBoolean(tag != null);
+        if (tag != null) tags.write(tag, out);
+        ranges.write(range, out);
+        out.flush();
+        final byte[] record = scratch.toByteArray();
+        crc.reset();
+        crc.update(record, 0, record.length);
+        final DataOutputStream p = new DataOutputStream(pending);
+        p.writeInt(record.length);
+        p.writeInt((int) crc.getValue());
+        p.write(record);
+        return ++appended;
+    }
+
+    /**
+     * 组提交：把<code>seq</code>及之前追加的记录写入文件。正在写的线程会把等待期间其它线程追加的一并写入，
+     * 那些线程拿到锁时发现已经写过了，直接返回。
+     */
+    private void commit(long seq) throws IOException {
+        if (committed >= seq) return;
+        synchronized (commitLock) {
+            if (committed >= seq) return;
+            if (closed) throw new IOException("日志已关闭。");
+            final byte[] data;
+            final long upto;
+            synchronized (this) {
+                data = pending.toByteArray();
+                pending.reset();
+                upto = appended;
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            if (sync) channel.force(false);
+            size += data.length;
+            committed = upto;
+            if (size >= compactAt) {
+                compact$();
+            }
+        }
+    }
+
+    /**
+     * 回放，并把尚未完成的输入写入新文件替换原文件。
+     *
+     * @return 各分类尚未完成的范围。
+     */
+    private Map<TAG, List<R>> compact$() throws IOException {
+        if (channel != null) channel.close();
+        final Map<TAG, List<R>> result = replay$();
+        final File tmp = new File(file.getPath() + ".tmp");
+        final long upto;
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            synchronized (this) {
+                // 已写入的都在回放结果中；尚未写入的接在新记录之后，以保持先后顺序。
+                final byte[] unwritten = pending.toByteArray();
+                pending.reset();
+                for (Map.Entry<TAG, List<R>> entry : result.entrySet()) {
+                    for (R r : entry.getValue()) {
+                        append(PUT, entry.getKey(), r);
+                    }
+                }
+                pending.writeTo(bytes);
+                pending.reset();
+                bytes.write(unwritten);
+                upto = appended;
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) out.write(buffer);
+            out.force(false);
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+        compactAt = Math.max(COMPACT_MIN, size * 2);
+        committed = upto;
+        return result;
+    }
+
+    private Map<TAG, List<R>> replay$() throws IOException {
+        final Map<TAG, AbsSorter<D, R>> sorters = new LinkedHashMap<>();
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                while (true) {
+                    final byte[] record = next(in);
+                    if (record == null) break;
+                    final DataInputStream r = new DataInputStream(new ByteArrayInputStream(record));
+                    final byte type = r.readByte();
+                    final TAG tag = r.readBoolean() ? tags.read(r) : null;
+                    final R range = ranges.read(r);
+                    AbsSorter<D, R> sorter = sorters.get(tag);
+                    if (type == PUT) {
+                        if (sorter == null) {
+                            sorter = throttle.newSorter();
+                            sorters.put(tag, sorter);
+                        }
+                        sorter.put(range);
+                    } else if (type == DONE && sorter != null) {
+                        sorter.drop(range);
+                    }
+                }
+            }
+        }
+        final Map<TAG, List<R>> result = new HashMap<>();
+        for (Map.Entry<TAG, AbsSorter<D, R>> entry : sorters.entrySet()) {
+            final List<R> list = new ArrayList<>();
+            R r;
+            while ((r = entry.getValue().takeSerial(null, Integer.MAX_VALUE, true)) != null) list.add(r);
+            if (!list.isEmpty()) result.put(entry.getKey(), list);
+        }
+        return result;
+    }
+
+    /**
+     * @return 下一条完整且校验通过的记录，没有则为null.
+     */
+    private byte[] next(DataInputStream in) throws IOException {
+        try {
+            final int length = in.readInt();
+            final int sum = in.readInt();
+            if (length <= 0 || length > MAX_RECORD) return null;
+            final byte[] record = new byte[length];
+            in.readFully(record);
+            final CRC32 crc = new CRC32();
+            crc.update(record, 0, record.length);
+            return (int) crc.getValue() == sum ? record : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+}
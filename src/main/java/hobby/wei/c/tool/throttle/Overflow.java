@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+/**
+ * 等待中的范围数达到上限时如何处理新的输入。见{@link AbsThrottle#setCapacity(int, int, Overflow)}.
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public enum Overflow {
+    /**
+     * 丢弃该分类中最早的（即等待栈底、最后才会派发的）非promised范围，为新的输入腾出位置；输入总是被接受。
+     * 没有可丢弃的（都是promised的）时照常接受，因此promised的输入可能超出上限。
+     */
+    DROP_OLDEST,
+    /**
+     * 拒绝新的输入：<code>put</code>返回false, <code>submit</code>以{@link java.util.concurrent.RejectedExecutionException}结束。
+     */
+    REJECT,
+    /**
+     * 阻塞输入的线程，直到有了空位或超时（超时则同{@link #REJECT}）。不可在任务执行者或监听器的回调中输入。
+     */
+    BLOCK
+}
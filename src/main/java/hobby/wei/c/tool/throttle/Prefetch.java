@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预取，见{@link AbsThrottle#setPrefetch(int)}: 最近一次输入及输入的方向，以及尚未用上的预取范围（按预取的先后）。
+ * <p>
+ * 非线程安全，由所属的分类同步。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+final class Prefetch<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
+    private final LinkedHashMap<R, R> prefetched = new LinkedHashMap<>();
+    private R last;
+    private boolean ascending;
+
+    Prefetch(boolean minFirst) {
+        this.ascending = minFirst;
+    }
+
+    /**
+     * 记下输入的方向，并判定尚未用上的预取范围：与输入相交的命中；不在输入前方的浪费。
+     *
+     * @param executing 正在执行的非promised范围。
+     * @return 浪费了而仍在执行的，应取消掉；没有则为null.
+     */
+    <TAG> List<R> observe(R range, Map<R, R> executing, ThrottleListener<TAG> l, TAG tag) {
+        if (last != null) {
+            final int delta = range.from().delta(last.from());
+            if (delta != 0) ascending = delta > 0;
+        }
+        last = range;
+        if (prefetched.isEmpty()) return null;
+        List<R> wasted = null;
+        for (Iterator<R> it = prefetched.values().iterator(); it.hasNext(); ) {
+            final R r = it.next();
+            final boolean hit = r.overlap(range);
+            if (hit || !(ascending ? r.from().delta(range.to()) > 0 : r.to().delta(range.from()) < 0)) {
+                it.remove();
+                if (!hit && executing.containsKey(r)) {
+                    if (wasted == null) wasted = new ArrayList<>(2);
+                    wasted.add(r);
+                }
+                if (l != null) l.onPrefetched(tag, hit);
+            }
+        }
+        return wasted;
+    }
+
+    /**
+     * @param inflight 正在执行的范围的区间索引。
+     * @param budget   见{@link AbsThrottle#setPrefetch(int)}.
+     * @return 下一个要预取的范围：从最近的输入或最前方的预取范围往前，跳过正在执行和新鲜期内已完成的。
+     */
+    R predict(AbsSorter<D, R> sorter, AbsSorter<D, R> inflight, Freshness<D, R> fresh, int limit, int budget) {
+        if (last == null || prefetched.size() >= budget) return null;
+        R anchor = last;
+        for (R r : prefetched.values()) {
+            if (ascending ? r.to().delta(anchor.to()) > 0 : r.from().delta(anchor.from()) < 0) anchor = r;
+        }
+        final int len = Math.min(last.delta() + 1, limit);
+        for (int i = 0; i < budget; i++) {
+            final D from, to;
+            if (ascending) {
+                from = anchor.to().offset(1);
+                to = from == null ? null : from.offset(len - 1);
+            } else {
+                to = anchor.from().offset(-1);
+                from = to == null ? null : to.offset(-(len - 1));
+            }
+            if (from == null || to == null) return null; // 没有相邻的
+            anchor = sorter.create(from, to);
+            if (!inflight.overlap(from, to) && !fresh.contains(anchor)) return anchor;
+        }
+        return null;
+    }
+
+    void onDispatch(R range) {
+        prefetched.put(range, range);
+    }
+
+    /**
+     * @param failed 是否被取消或失败了。
+     * @return 是否为浪费了的预取范围。
+     */
+    boolean onDone(R range, boolean failed) {
+        return failed && !prefetched.isEmpty() && prefetched.remove(range) != null;
+    }
+
+    boolean isEmpty() {
+        return prefetched.isEmpty();
+    }
+
+    boolean contains(R range) {
+        return prefetched.containsKey(range);
+    }
+
+    /**
+     * 尚未用上的预取范围，按预取的先后。
+     */
+    Collection<R> ranges() {
+        return prefetched.values();
+    }
+}
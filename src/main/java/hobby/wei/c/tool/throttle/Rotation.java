@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 有待处理任务的分类环，闲置的分类不在其中。按差额轮转(deficit round robin)分配push机会，见{@link
+ * AbsThrottle#setWeigher(Weigher)}.
+ * <p>
+ * 加入环是线程安全的；{@link #round()}及各分类的额度只由在执行pushRequest()的线程访问。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+final class Rotation<F extends Rotation.Member> {
+    private final Deque<F> ready = new ConcurrentLinkedDeque<>();
+
+    /**
+     * 将有待处理任务的分类加入环。
+     */
+    void offer(F f) {
+        if (f.ready.compareAndSet(false, true)) ready.offer(f);
+    }
+
+    /**
+     * 轮转一圈，每一轮仅遍历有待处理任务的分类：各分类连续push, 直到用完其权重数的额度或不可以继续。
+     *
+     * @return true 都不可以继续push, false 反之。
+     */
+    boolean round() {
+        boolean empty = true;
+        for (int n = ready.size(); n > 0; n--) {
+            final F f = ready.poll();
+            if (f == null) break;
+            f.ready.set(false); // 必须在检查之前置为false, 新的put会重新加入。
+            if (f.deficit <= 0) f.deficit += f.weight();
+            boolean e;
+            do {
+                final int dispatched = f.dispatched;
+                e = f.push();
+                f.deficit -= f.dispatched - dispatched;
+            } while (!e && f.deficit > 0);
+            empty &= e;
+            // if (!empty) 当然还要继续
+            if (!f.pending()) f.deficit = 0;
+            else if (e && f.deficit > 0) { // 名额不足，保留位置和差额，本轮其它分类也不必再试了。
+                if (f.ready.compareAndSet(false, true)) ready.offerFirst(f);
+                break;
+            } else offer(f);
+        }
+        return empty;
+    }
+
+    abstract static class Member {
+        /**
+         * 是否在环中。
+         */
+        final AtomicBoolean ready = new AtomicBoolean(false);
+        /**
+         * 本分类剩余的额度，以及累计派发的范围数。
+         */
+        int deficit, dispatched;
+
+        /**
+         * @return 每一轮的额度，不小于1.
+         */
+        abstract int weight();
+
+        /**
+         * @return true 不可以继续push, false 反之。
+         */
+        abstract boolean push();
+
+        /**
+         * 是否有待处理（尚未执行）的任务。
+         */
+        abstract boolean pending();
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同一台机器上多个进程共用并发名额的{@link Counter}: 已占用的名额记在内存映射文件中，每次读改写都在{@link FileLock 文件锁}
+ * 的保护下进行，因此各进程中共用同一个文件的计数器加起来也不会超过{@link #limit() 上限}（各进程应使用相同的
+ * <code>maxReqCount</code>）。每次领取、退回名额都要加一次文件锁，适用于任务本身远比这耗时的场景。
+ * <p>
+ * 每个实例在文件中登记一项租约，记录自己占用的名额数，并由专用的守护线程定期续约（续约要加文件锁，可能阻塞，因此不占用
+ * {@link Tasks#timer() 公用的定时器}）。某个进程异常退出之后，
+ * 其租约过期，占用的名额会被其它进程在名额不足时收回。若本进程因长时间停顿而被误收回，下次改动名额或续约时会先重新登记
+ * 并补回占用数，不会改写已不属于自己的租约。
+ * <p>
+ * 速率限制和自适应上限仍是各进程自己的；{@link #count()}也只是本进程中的。不再使用时请{@link #close()}.
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class SharedCounter extends Counter implements Closeable {
+    private static final long MAGIC = 0x5468726f74746c31L; // "Throttl1"
+    private static final int OCCUPIED = 8, ENTRIES = 64, ENTRY = 32, MAX_ENTRIES = 128;
+    private static final int OWNER = 0, LEASE = 8, COUNT = 16;
+    private static final int SIZE = ENTRIES + MAX_ENTRIES * ENTRY;
+    /**
+     * 同一个JVM中对同一文件重复加锁会抛出{@link java.nio.channels.OverlappingFileLockException}, 因此先在进程内按文件
+     * 互斥：键为文件的规范路径，值为该文件的{@link #lock}, 由本对象同步，最后一个实例关闭时移除。
+     */
+    private static final Map<String, Mutex> sLocks = new HashMap<>();
+
+    private final File path;
+    private final String key;
+    /**
+     * 与同一JVM中共用同一文件的实例互斥。以下由本锁同步的字段也都在其保护之下。
+     */
+    private final Mutex lock;
+    private final MappedByteBuffer buffer;
+    private final long owner;
+    private final long lease;
+    private final ScheduledFuture<?> heartbeat;
+    /**
+     * 加锁用的文件及其通道。由{@link #lock}同步。
+     */
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    /**
+     * 本实例占用的名额数。登记有效时与租约中的相同，被误收回之后用于补回。由{@link #lock}同步。
+     */
+    private int held;
+    /**
+     * 租约项在文件中的偏移。由{@link #lock}同步。
+     */
+    private long entry;
+    /**
+     * 加锁之前线程的中断状态，见{@link #begin()}. 由{@link #lock}同步。
+     */
+    private boolean interrupted;
+    private volatile long scannedAt;
+    private volatile boolean closed;
+
+    /**
+     * 租约为10秒。
+     *
+     * @see #SharedCounter(File, int, long, TimeUnit)
+     */
+    public SharedCounter(File file, int maxReqCount) throws IOException {
+        this(file, maxReqCount, 10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param file  共用的文件，不存在则创建。
+     * @param lease 租约期限，须远大于可能的进程停顿(如GC)时间；每三分之一期限续约一次。
+     * @throws IOException 文件无法映射、不是本类的文件，或登记的实例已满。
+     */
+    public SharedCounter(File file, int maxReqCount, long lease, TimeUnit unit) throws IOException {
+        super(maxReqCount);
+        this.lease = Math.max(1, unit.toMillis(lease));
+        this.path = file;
+        long id;
+        do id = new SecureRandom().nextLong(); while (id == 0);
+        owner = id;
+        key = file.getCanonicalPath();
+        lock = obtain(key);
+        synchronized (lock) {
+            try {
+                raf = new RandomAccessFile(file, "rw");
+                channel = raf.getChannel();
+                final FileLock l = begin();
+                if (l == null) throw new IOException("无法锁定文件：" + file);
+                try {
+                    if (raf.length() < SIZE) raf.setLength(SIZE);
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+                    buffer.order(ByteOrder.nativeOrder());
+                    if (get(0) == 0) put(0, MAGIC);
+                    else if (get(0) != MAGIC) throw new IOException("不是" + getClass().getSimpleName() + "的文件：" + file);
+                    entry = claim$();
+                } finally {
+                    end(l);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (raf != null) raf.close();
+                dispose(key);
+                throw e;
+            }
+        }
+        final long period = Math.max(1, this.lease / 3);
+        heartbeat = Heartbeat.sTimer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                renew();
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 注销本实例的租约并退回其占用的名额。之后{@link #acquire()}总是失败。
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+            heartbeat.cancel(false);
+            final FileLock l = begin();
+            if (l != null) try {
+                final long e = entry;
+                if (get(e + OWNER) == owner) {
+                    subtract$(get(e + COUNT));
+                    put(e + COUNT, 0);
+                    put(e + OWNER, 0);
+                }
+                held = 0;
+            } finally {
+                end(l);
+            }
+            raf.close();
+        }
+        dispose(key);
+    }
+
+    /**
+     * 取得文件<code>key</code>的进程内锁，引用计数加一。
+     */
+    private static Mutex obtain(String key) {
+        synchronized (sLocks) {
+            Mutex m = sLocks.get(key);
+            if (m == null) sLocks.put(key, m = new Mutex());
+            m.refs++;
+            return m;
+        }
+    }
+
+    private static void dispose(String key) {
+        synchronized (sLocks) {
+            final Mutex m = sLocks.get(key);
+            if (m != null && --m.refs == 0) sLocks.remove(key);
+        }
+    }
+
+    @Override
+    boolean acquire() {
+        if (closed) return false;
+        synchronized (lock) {
+            final FileLock l = begin();
+            if (l == null) return false;
+            try {
+                if (take$()) return true;
+                // 名额不足时才去收回过期的租约，且每三分之一期限最多扫描一次。
+                final long now = System.currentTimeMillis(), at = scannedAt;
+                if (now - at < lease / 3) return false;
+                scannedAt = now;
+                return reclaim$(now) && take$();
+            } finally {
+                end(l);
+            }
+        }
+    }
+
+    @Override
+    void reserve() {
+        if (closed) return;
+        synchronized (lock) {
+            final FileLock l = begin();
+            try {
+                final boolean registered = l != null && ensure$();
+                held++; // 没能登记的，重新登记时补上。
+                if (registered) {
+                    add(entry + COUNT, 1);
+                    add(OCCUPIED, 1);
+                }
+            } finally {
+                end(l);
+            }
+        }
+    }
+
+    @Override
+    void release() {
+        if (closed) return;
+        synchronized (lock) {
+            if (held <= 0) return;
+            final FileLock l = begin();
+            try {
+                final boolean registered = l != null && ensure$();
+                held--;
+                if (registered) {
+                    add(entry + COUNT, -1);
+                    subtract$(1);
+                }
+            } finally {
+                end(l);
+            }
+        }
+    }
+
+    /**
+     * 占用一个共用名额并记入租约。
+     */
+    private boolean take$() {
+        if (!ensure$() || get(OCCUPIED) >= limit()) return false;
+        add(OCCUPIED, 1);
+        add(entry + COUNT, 1);
+        held++;
+        return true;
+    }
+
+    /**
+     * 确认租约仍是自己的；若已被误收回，则重新登记并补回本实例仍占用的名额，以免改写别人的租约或少计占用数。
+     *
+     * @return false 暂时没有空位，没能重新登记。
+     */
+    private boolean ensure$() {
+        if (get(entry + OWNER) == owner) return true;
+        final long e;
+        try {
+            e = claim$();
+        } catch (IOException ignored) {
+            return false;
+        }
+        put(e + COUNT, held);
+        add(OCCUPIED, held);
+        entry = e;
+        return true;
+    }
+
+    /**
+     * 退回共用名额，不低于0.
+     */
+    private void subtract$(long n) {
+        put(OCCUPIED, Math.max(0, get(OCCUPIED) - n));
+    }
+
+    /**
+     * 登记一项租约。没有空位时先收回过期的。
+     */
+    private long claim$() throws IOException {
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < MAX_ENTRIES; i++) {
+                final long e = ENTRIES + (long) i * ENTRY;
+                if (get(e + OWNER) == 0) {
+                    put(e + OWNER, owner);
+                    put(e + LEASE, System.currentTimeMillis());
+                    put(e + COUNT, 0);
+                    return e;
+                }
+            }
+            reclaim$(System.currentTimeMillis());
+        }
+        throw new IOException("共用计数器的登记已满：" + MAX_ENTRIES);
+    }
+
+    /**
+     * 收回所有过期的租约，扣除其占用的名额。
+     *
+     * @return 是否收回了名额。
+     */
+    private boolean reclaim$(long now) {
+        boolean any = false;
+        for (int i = 0; i < MAX_ENTRIES; i++) {
+            final long e = ENTRIES + (long) i * ENTRY;
+            final long o = get(e + OWNER);
+            if (o == 0 || o == owner || now - get(e + LEASE) <= lease) continue;
+            final long n = get(e + COUNT);
+            subtract$(n);
+            any |= n > 0;
+            put(e + COUNT, 0);
+            put(e + OWNER, 0);
+        }
+        return any;
+    }
+
+    /**
+     * 续约；若已被误收回，则{@link #ensure$() 重新登记}。
+     */
+    private void renew() {
+        synchronized (lock) {
+            if (closed) return;
+            final FileLock l = begin();
+            if (l != null) try {
+                if (ensure$()) put(entry + LEASE, System.currentTimeMillis());
+            } finally {
+                end(l);
+            }
+        }
+    }
+
+    /**
+     * 加文件锁。通道上的阻塞操作被中断时会关闭通道，因此先清除中断状态，由{@link #end(FileLock)}恢复；万一仍被关闭
+     * （映射不受影响），重新打开。须在{@link #lock}同步块中调用。
+     *
+     * @return null 无法加锁（I/O错误）。
+     */
+    private FileLock begin() {
+        interrupted = Thread.interrupted();
+        try {
+            if (!channel.isOpen()) {
+                raf.close();
+                raf = new RandomAccessFile(path, "rw");
+                channel = raf.getChannel();
+            }
+            return channel.lock();
+        } catch (IOException e) {
+            if (interrupted) Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void end(FileLock l) {
+        if (l == null) return;
+        try {
+            l.release();
+        } catch (IOException ignored) { // 通道已关闭，锁也随之释放了。
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private long get(long offset) {
+        return buffer.getLong((int) offset);
+    }
+
+    private void put(long offset, long value) {
+        buffer.putLong((int) offset, value);
+    }
+
+    private void add(long offset, long delta) {
+        put(offset, get(offset) + delta);
+    }
+
+    private static final class Mutex {
+        int refs; // 由sLocks同步
+    }
+
+    /**
+     * 续约专用的定时器（单个守护线程）。
+     */
+    private static final class Heartbeat {
+        static final ScheduledExecutorService sTimer;
+
+        static {
+            final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread t = new Thread(r, "throttle-shared-counter-heartbeat");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            timer.setRemoveOnCancelPolicy(true);
+            sTimer = timer;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.util.Arrays;
+
+import static scala.Predef.require;
+
+/**
+ * <code>int</code>范围分拣器(去重复、排序等)，语义同{@link SorterR}, 但不需要{@link Discrete}和{@link Range}对象。
+ * <p>
+ * 范围以规整（互不相交且不相邻）的形式按序存放在两个<code>int[]</code>中，定位用二分查找；返回的范围打包成一个
+ * <code>long</code>（见{@link #range(int, int)}、{@link #from(long)}、{@link #to(long)}），空用{@link #NONE}表示。
+ * 数组容量够用之后，各操作都不再分配内存。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class SorterInt {
+    /**
+     * 表示没有范围。由于<code>from > to</code>, 不会与任何合法的范围冲突。
+     */
+    public static final long NONE = range$(1, 0);
+
+    private int[] froms, tos;
+    private int size;
+
+    public SorterInt() {
+        this(16);
+    }
+
+    /**
+     * @param capacity 初始容量（可容纳的不连续范围的个数）。
+     */
+    public SorterInt(int capacity) {
+        froms = new int[Math.max(capacity, 1)];
+        tos = new int[froms.length];
+    }
+
+    public static long range(int from, int to) {
+        require(from <= to);
+        return range$(from, to);
+    }
+
+    private static long range$(int from, int to) {
+        return ((long) from << 32) | (to & 0xffffffffL);
+    }
+
+    public static int from(long range) {
+        return (int) (range >> 32);
+    }
+
+    public static int to(long range) {
+        return (int) range;
+    }
+
+    /**
+     * 输入单一离散值。
+     */
+    public void put(int n) {
+        put(n, n);
+    }
+
+    /**
+     * 输入一个范围。
+     */
+    public synchronized void put(int from, int to) {
+        require(from <= to);
+        final int lo = firstTo((long) from - 1);
+        final int hi = lastFrom((long) to + 1);
+        if (lo > hi) { // 与任何范围都不相交也不相邻
+            resize(lo, 0, 1);
+            froms[lo] = from;
+            tos[lo] = to;
+        } else {
+            final int f = Math.min(from, froms[lo]), t = Math.max(to, tos[hi]);
+            resize(lo, hi - lo + 1, 1);
+            froms[lo] = f;
+            tos[lo] = t;
+        }
+    }
+
+    /**
+     * @see #take(int, int, boolean, long[])
+     */
+    public int take(int limit, boolean fromMin, long[] out) {
+        return getMore$(false, 0, limit, fromMin, true, out);
+    }
+
+    /**
+     * 取出一个不连续的范围集合并删除，各元素之间有间隙。
+     *
+     * @param prev    表示以本值为起始位置，但返回结果不包括本值。
+     * @param limit   范围最大是多少个。
+     * @param fromMin true 从最小的开始，false 从最大的开始。
+     * @param out     用于输出的数组，结果个数不会超过其长度。
+     * @return 输出到<code>out</code>的范围个数。
+     */
+    public int take(int prev, int limit, boolean fromMin, long[] out) {
+        return getMore$(true, prev, limit, fromMin, true, out);
+    }
+
+    /**
+     * @see #get(int, int, boolean, long[])
+     */
+    public int get(int limit, boolean fromMin, long[] out) {
+        return getMore$(false, 0, limit, fromMin, false, out);
+    }
+
+    /**
+     * 取出一个不连续的范围集合但不删除，各元素之间有间隙。
+     *
+     * @param prev    表示以本值为起始位置，但返回结果不包括本值。
+     * @param limit   范围最大是多少个。
+     * @param fromMin true 从最小的开始，false 从最大的开始。
+     * @param out     用于输出的数组，结果个数不会超过其长度。
+     * @return 输出到<code>out</code>的范围个数。
+     */
+    public int get(int prev, int limit, boolean fromMin, long[] out) {
+        return getMore$(true, prev, limit, fromMin, false, out);
+    }
+
+    private synchronized int getMore$(boolean hasPrev, int prev, int limit, boolean minFirst, boolean drop, long[] out) {
+        int n = 0;
+        long count = 0;
+        while (count < limit && n < out.length) {
+            final long range = getSerial$(hasPrev, prev, (int) (limit - count), minFirst);
+            if (range == NONE) break;
+            if (drop) drop(from(range), to(range));
+            out[n++] = range;
+            count += (long) to(range) - from(range) + 1;
+            hasPrev = true;
+            prev = minFirst ? to(range) : from(range);
+        }
+        return n;
+    }
+
+    /**
+     * @see #takeSerial(int, int, boolean)
+     */
+    public long takeSerial(int limit, boolean minFirst) {
+        return takeSerial$(false, 0, limit, minFirst);
+    }
+
+    /**
+     * 取出一个连续的范围并删除，其<code>from ~ to</code>的差值在<code>limit</code>范围内。
+     *
+     * @param prev     表示以本值为起始位置，但返回结果不包括本值。
+     * @param limit    范围最大是多少个。
+     * @param minFirst true 从最小的开始，false 从最大的开始。
+     * @return 可能为{@link #NONE}.
+     */
+    public long takeSerial(int prev, int limit, boolean minFirst) {
+        return takeSerial$(true, prev, limit, minFirst);
+    }
+
+    private synchronized long takeSerial$(boolean hasPrev, int prev, int limit, boolean minFirst) {
+        final long range = getSerial$(hasPrev, prev, limit, minFirst);
+        if (range != NONE) drop(from(range), to(range));
+        return range;
+    }
+
+    /**
+     * @see #getSerial(int, int, boolean)
+     */
+    public long getSerial(int limit, boolean minFirst) {
+        return getSerial$(false, 0, limit, minFirst);
+    }
+
+    /**
+     * 取出一个连续的范围但不删除，其<code>from ~ to</code>的差值在<code>limit</code>范围内。
+     *
+     * @param prev     表示以本值为起始位置，但返回结果不包括本值。
+     * @param limit    范围最大是多少个。
+     * @param minFirst true 从最小的开始，false 从最大的开始。
+     * @return 可能为{@link #NONE}.
+     */
+    public long getSerial(int prev, int limit, boolean minFirst) {
+        return getSerial$(true, prev, limit, minFirst);
+    }
+
+    private synchronized long getSerial$(boolean hasPrev, int prev, int limit, boolean minFirst) {
+        if (size == 0 || limit <= 0) return NONE;
+        int from, to;
+        if (minFirst) {
+            final int i = hasPrev ? firstTo((long) prev + 1) : 0;
+            if (i >= size) return NONE;
+            from = hasPrev ? Math.max(froms[i], prev + 1) : froms[i];
+            to = tos[i];
+            if ((long) to - from + 1 > limit) to = from + (limit - 1); // 切断
+        } else {
+            final int i = hasPrev ? lastFrom((long) prev - 1) : size - 1;
+            if (i < 0) return NONE;
+            from = froms[i];
+            to = hasPrev ? Math.min(tos[i], prev - 1) : tos[i];
+            if ((long) to - from + 1 > limit) from = to - (limit - 1); // 切断
+        }
+        return range$(from, to);
+    }
+
+    public boolean contains(int n) {
+        return contains(n, n);
+    }
+
+    public synchronized boolean contains(int from, int to) {
+        final int i = lastFrom(from);
+        return i >= 0 && tos[i] >= to;
+    }
+
+    /**
+     * 是否与本分拣器中的范围有交集。
+     */
+    public synchronized boolean overlap(int from, int to) {
+        final int i = firstTo(from);
+        return i < size && froms[i] <= to;
+    }
+
+    /**
+     * 求范围<code>from ~ to</code>与本分拣器中的范围的交集（本分拣器不变）。
+     *
+     * @param out 交集的各部分按从小到大的顺序输出到其中，超出其长度的不输出。
+     * @return 交集的部分数，可能大于<code>out</code>的长度。
+     */
+    public synchronized int intersect(int from, int to, long[] out) {
+        require(from <= to);
+        int n = 0;
+        for (int i = firstTo(from); i < size && froms[i] <= to; i++, n++) {
+            if (n < out.length) out[n] = range$(Math.max(froms[i], from), Math.min(tos[i], to));
+        }
+        return n;
+    }
+
+    /**
+     * 从范围<code>from ~ to</code>中减去本分拣器中的所有范围（本分拣器不变）。
+     *
+     * @param out 剩余的部分按从小到大的顺序输出到其中，超出其长度的不输出。
+     * @return 剩余的部分数，可能大于<code>out</code>的长度；无交集则返回<code>-1</code>, <code>out</code>不变。
+     */
+    public synchronized int subtract(int from, int to, long[] out) {
+        require(from <= to);
+        int i = firstTo(from);
+        if (i >= size || froms[i] > to) return -1;
+        int n = 0;
+        long next = from;
+        for (; i < size && froms[i] <= to; i++) {
+            if (froms[i] > next) {
+                if (n < out.length) out[n] = range$((int) next, froms[i] - 1);
+                n++;
+            }
+            next = (long) tos[i] + 1;
+        }
+        if (next <= to) {
+            if (n < out.length) out[n] = range$((int) next, to);
+            n++;
+        }
+        return n;
+    }
+
+    public boolean drop(int n) {
+        return drop(n, n);
+    }
+
+    /**
+     * @return 是否还有 {@link #hasMore() 更多}。
+     */
+    public synchronized boolean drop(int from, int to) {
+        if (size == 0) return false;
+        final int lo = firstTo(from);
+        final int hi = lastFrom(to);
+        if (lo <= hi) {
+            final boolean head = froms[lo] < from, tail = tos[hi] > to;
+            final int headFrom = froms[lo], tailTo = tos[hi];
+            resize(lo, hi - lo + 1, (head ? 1 : 0) + (tail ? 1 : 0));
+            int i = lo;
+            if (head) {
+                froms[i] = headFrom;
+                tos[i++] = from - 1;
+            }
+            if (tail) {
+                froms[i] = to + 1;
+                tos[i] = tailTo;
+            }
+        }
+        return hasMore();
+    }
+
+    public synchronized boolean hasMore() {
+        return size != 0;
+    }
+
+    /**
+     * @return 最小的<code>i</code>, 使<code>tos[i] >= value</code>; 都不满足则返回<code>size</code>.
+     */
+    private int firstTo(long value) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (tos[mid] < value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * @return 最大的<code>i</code>, 使<code>froms[i] <= value</code>; 都不满足则返回<code>-1</code>.
+     */
+    private int lastFrom(long value) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (froms[mid] <= value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo - 1;
+    }
+
+    /**
+     * 把<code>[index, index + count)</code>的位置替换为<code>replace</code>个（待填充的）位置。
+     */
+    private void resize(int index, int count, int replace) {
+        final int newSize = size - count + replace;
+        if (newSize > froms.length) {
+            final int capacity = Math.max(newSize, froms.length * 2);
+            froms = Arrays.copyOf(froms, capacity);
+            tos = Arrays.copyOf(tos, capacity);
+        }
+        final int tail = size - (index + count);
+        if (tail > 0 && count != replace) {
+            System.arraycopy(froms, index + count, froms, index + replace, tail);
+            System.arraycopy(tos, index + count, tos, index + replace, tail);
+        }
+        size = newSize;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.util.List;
+
+/**
+ * 语义同<code>{@link SorterR}&lt;{@link IntD}&gt;</code>, 但范围存放在{@link SorterInt}中，而不是以{@link Range}为节点的
+ * 区间索引：输入、删除、合并都不再为索引分配对象，只在返回结果时才创建{@link Range}. 供{@link ThrottleInt}使用。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+final class SorterIntR extends AbsSorter<IntD, Range<IntD>> {
+    private final SorterInt sorter = new SorterInt(4);
+    /**
+     * {@link #intersect(Range, List) intersect}和{@link #subtract(Range, List) subtract}的输出缓冲，由本对象同步。
+     */
+    private long[] parts = new long[4];
+
+    @Override
+    void put(IntD from, IntD to) {
+        sorter.put(from.n, to.n);
+    }
+
+    @Override
+    void put(Range<IntD> range) {
+        sorter.put(range.from.n, range.to.n);
+    }
+
+    @Override
+    synchronized Range<IntD> getSerial$(Range<IntD> prev, int limit, boolean minFirst) {
+        final long range = prev == null ? sorter.getSerial(limit, minFirst)
+                : sorter.getSerial(minFirst ? prev.to.n : prev.from.n, limit, minFirst);
+        return range == SorterInt.NONE ? null : create(SorterInt.from(range), SorterInt.to(range));
+    }
+
+    @Override
+    boolean contains(IntD from, IntD to) {
+        return sorter.contains(from.n, to.n);
+    }
+
+    @Override
+    boolean overlap(IntD from, IntD to) {
+        return sorter.overlap(from.n, to.n);
+    }
+
+    @Override
+    synchronized void intersect(Range<IntD> range, List<Range<IntD>> out) {
+        int n;
+        while ((n = sorter.intersect(range.from.n, range.to.n, parts)) > parts.length) {
+            parts = new long[n];
+        }
+        output(range, n, out);
+    }
+
+    @Override
+    synchronized boolean subtract(Range<IntD> range, List<Range<IntD>> out) {
+        int n;
+        while ((n = sorter.subtract(range.from.n, range.to.n, parts)) > parts.length) {
+            parts = new long[n];
+        }
+        if (n < 0) return false;
+        output(range, n, out);
+        return true;
+    }
+
+    /**
+     * 把{@link #parts}中的前<code>n</code>个加入<code>out</code>, 与<code>range</code>相同的直接用<code>range</code>.
+     */
+    private void output(Range<IntD> range, int n, List<Range<IntD>> out) {
+        for (int i = 0; i < n; i++) {
+            final int from = SorterInt.from(parts[i]), to = SorterInt.to(parts[i]);
+            out.add(from == range.from.n && to == range.to.n ? range : create(from, to));
+        }
+    }
+
+    @Override
+    boolean drop(IntD from, IntD to) {
+        return sorter.drop(from.n, to.n);
+    }
+
+    @Override
+    public boolean hasMore() {
+        return sorter.hasMore();
+    }
+
+    @Override
+    Range<IntD> create(IntD from, IntD to) {
+        return new Range<>(from, to);
+    }
+
+    private Range<IntD> create(int from, int to) {
+        return new Range<>(IntD.of(from), IntD.of(to));
+    }
+}
@@ -16,11 +16,15 @@
 
 package hobby.wei.c.tool.throttle;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.SortedSet;
-import java.util.WeakHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.Objects.requireNonNull;
 import static scala.Predef.require;
@@ -183,28 +187,97 @@ class Rs<O> extends AbsSorter.AbsR<Linkless<O>> {
  * 无法连续的离散点。
  */
 final class Linkless<O> implements Discrete<Linkless<O>> {
-    private static final AtomicInteger sNum = new AtomicInteger(0);
-    private static final WeakHashMap<Object, Integer> sMap = new WeakHashMap<>();
-    private final int n;
+    /**
+     * 为了保证同一个对象排序不重复不紊乱，给每个（<code>equals()</code>意义上的）对象分配一个序号。
+     * 序号是64位的，间隔为2（保证{@link #delta(Linkless)}不会得到1，即不会被视为可合并的），实际上不会溢出。
+     * 对象被回收后，对应的条目随后在分配新序号时清除；整个过程无全局锁。
+     */
+    private static final AtomicLong sNum = new AtomicLong(0);
+    private static final ConcurrentMap<Key, Long> sMap = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Object> sQueue = new ReferenceQueue<>();
+    private final long n;
     final O obj;
 
     Linkless(O obj) {
         this.obj = requireNonNull(obj);
-        Integer i;
-        // 为了保证同一个对象排序不重复不紊乱
-        synchronized (sMap) {
-            i = sMap.get(obj);
-            if (i == null) {
-                i = sNum.addAndGet(2);
-                sMap.put(obj, i);
-            }
+        this.n = sequence(obj);
+    }
+
+    private static long sequence(Object obj) {
+        final Long i = sMap.get(new StrongKey(obj));
+        if (i != null) return i;
+        expunge();
+        final Long seq = sNum.addAndGet(2);
+        final Long prev = sMap.putIfAbsent(new WeakKey(obj, sQueue), seq);
+        return prev == null ? seq : prev; // 并发时以先放进去的为准，本次分配的序号废弃即可。
+    }
+
+    private static void expunge() {
+        Reference<?> ref;
+        while ((ref = sQueue.poll()) != null) {
+            sMap.remove(ref);
+        }
+    }
+
+    private interface Key {
+        Object get();
+    }
+
+    private static boolean equals(Key key, int hash, Object o) {
+        if (o == key) return true;
+        if (!(o instanceof Key) || o.hashCode() != hash) return false;
+        final Object obj = key.get();
+        return obj != null && obj.equals(((Key) o).get());
+    }
+
+    private static final class StrongKey implements Key {
+        private final Object obj;
+        private final int hash;
+
+        StrongKey(Object obj) {
+            this.obj = obj;
+            this.hash = obj.hashCode();
+        }
+
+        @Override
+        public Object get() {
+            return obj;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return Linkless.equals(this, hash, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class WeakKey extends WeakReference<Object> implements Key {
+        private final int hash;
+
+        WeakKey(Object obj, ReferenceQueue<Object> queue) {
+            super(obj, queue);
+            this.hash = obj.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return Linkless.equals(this, hash, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
         }
-        n = i;
     }
 
     @Override
     public final int delta(Linkless d) {
-        return n - d.n;
+        final long delta = n - d.n;
+        return delta > Integer.MAX_VALUE ? Integer.MAX_VALUE : delta < Integer.MIN_VALUE ? Integer.MIN_VALUE : (int) delta;
     }
 
     @Override
@@ -225,7 +298,7 @@ final class Linkless<O> implements Discrete<Linkless<O>> {
 
     @Override
     public final int hashCode() {
-        return n;
+        return (int) (n ^ (n >>> 32));
     }
 
     @Override
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 尚未派发的输入及其输入时间，仅在设置了{@link AbsThrottle#setListener(ThrottleListener) 监听器}时记录，用于统计
+ * {@link ThrottleListener#onDispatch(Object, long) 排队时间}。
+ * <p>
+ * 线程安全：输入在生产者线程中记下，派发、完成、丢弃时删除，都不需要所属分类的锁。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+final class Stamps<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
+    private final Queue<Stamp<R>> stamps = new ConcurrentLinkedQueue<>();
+
+    void onPut(R range) {
+        stamps.offer(new Stamp<>(range, System.nanoTime()));
+    }
+
+    /**
+     * 报告与刚派发的范围有交集的输入的排队时间。
+     */
+    <TAG> void onDispatch(ThrottleListener<TAG> l, TAG tag, List<R> ranges) {
+        if (stamps.isEmpty()) return;
+        final long now = System.nanoTime();
+        for (Iterator<Stamp<R>> it = stamps.iterator(); it.hasNext(); ) {
+            final Stamp<R> s = it.next();
+            for (R r : ranges) {
+                if (s.range.overlap(r)) {
+                    it.remove();
+                    l.onDispatch(tag, now - s.at);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 删除不会再派发的输入的记录（被丢弃、挤出局、过期，或已被正在执行的范围覆盖）。
+     *
+     * @param identity 仅删除<code>range</code>本身，否则删除与之有交集的。
+     */
+    void unstamp(R range, boolean identity) {
+        if (stamps.isEmpty()) return;
+        for (Iterator<Stamp<R>> it = stamps.iterator(); it.hasNext(); ) {
+            final R r = it.next().range;
+            if (identity ? r == range : r.overlap(range)) it.remove();
+        }
+    }
+
+    /**
+     * 带时间的范围：输入的时间，或新鲜期的过期时间（见{@link Freshness}）。
+     */
+    static final class Stamp<R> {
+        final R range;
+        final long at;
+
+        Stamp(R range, long at) {
+            this.range = range;
+            this.at = at;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+/**
+ * 现成的任务执行者（各控制器的<code>ServiceExecutor</code>和<code>FutureExecutor</code>）所用的工具。
+ * <p>
+ * 任务提交到{@link ExecutorService}或由{@link CompletableFuture}表示，取消用{@link Future#cancel(boolean)}，
+ * 可设置超时；任务结束（无论成功、失败、取消还是超时）时回调<code>onDone</code>并释放对它的引用。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public final class Tasks {
+    private Tasks() {
+    }
+
+    /**
+     * 每个任务一个虚拟线程的{@link ExecutorService}（需要JDK 21+），不支持时退化为
+     * {@link Executors#newCachedThreadPool()}.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * 公用的定时器（单个守护线程），用于超时、推迟等短小的定时操作。
+     */
+    static ScheduledExecutorService timer() {
+        return Timer.sTimer;
+    }
+
+    private static final class Timer {
+        static final ScheduledExecutorService sTimer;
+
+        static {
+            final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread t = new Thread(r, "throttle-task-timeout");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            timer.setRemoveOnCancelPolicy(true);
+            sTimer = timer;
+        }
+    }
+
+    /**
+     * 记录正在执行的任务，以便取消。
+     * <p>
+     * 任务以<code>target</code>和<code>tag</code>标识：<code>identity</code>为true时<code>target</code>按引用比较，
+     * 否则按<code>equals()</code>比较。标识相同的多个任务（如同一个范围同时以promised和非promised执行）会被一并取消。
+     */
+    static abstract class Tracker<T, TAG> {
+        private final Map<Key, Task> tasks = new HashMap<>();
+        private final boolean identity;
+        private final long timeout;
+
+        /**
+         * @param timeout 单个任务的超时时间，<code>&lt;= 0</code>表示不超时。
+         */
+        Tracker(boolean identity, long timeout, TimeUnit unit) {
+            this.identity = identity;
+            this.timeout = timeout > 0 ? unit.toNanos(timeout) : 0;
+        }
+
+        /**
+         * 任务失败或超时（{@link TimeoutException}），不包括被取消。
+         */
+        abstract void failed(T target, TAG tag, Throwable e);
+
+        void submit(ExecutorService service, T target, TAG tag, Callable<Void> work, final Runnable onDone) {
+            final Task task = new Task(target, tag);
+            final FutureTask<Void> future = new FutureTask<Void>(work) {
+                @Override
+                protected void done() {
+                    Throwable e = null;
+                    try {
+                        get();
+                    } catch (ExecutionException ex) {
+                        e = ex.getCause();
+                    } catch (CancellationException | InterruptedException ignored) {
+                    }
+                    finish(task, e, onDone);
+                }
+            };
+            start(task, future);
+            try {
+                service.execute(future);
+            } catch (RuntimeException e) {
+                untrack(task);
+                throw e;
+            }
+        }
+
+        void track(T target, TAG tag, final CompletableFuture<?> future, final Runnable onDone) {
+            final Task task = new Task(target, tag);
+            start(task, future);
+            future.whenComplete(new BiConsumer<Object, Throwable>() {
+                @Override
+                public void accept(Object o, Throwable e) {
+                    if (e instanceof CompletionException && e.getCause() != null) e = e.getCause();
+                    finish(task, e instanceof CancellationException ? null : e, onDone);
+                }
+            });
+        }
+
+        void cancel(T target, TAG tag) {
+            final List<Future<?>> futures = new ArrayList<>(1);
+            synchronized (this) {
+                for (Task task = tasks.get(new Key(target, tag)); task != null; task = task.next) {
+                    futures.add(task.future);
+                }
+            }
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        private void start(final Task task, final Future<?> future) {
+            task.future = future;
+            synchronized (this) {
+                task.next = tasks.put(task, task);
+            }
+            if (timeout > 0) {
+                task.timer = Timer.sTimer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        task.timedOut = true;
+                        if (future instanceof CompletableFuture) {
+                            ((CompletableFuture<?>) future).completeExceptionally(new TimeoutException());
+                        }
+                        future.cancel(true);
+                    }
+                }, timeout, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void finish(Task task, Throwable e, Runnable onDone) {
+            untrack(task);
+            if (task.timedOut && e == null) e = new TimeoutException();
+            try {
+                if (e != null) failed(task.target, task.tag, e);
+            } finally {
+                // 失败的要如实报告，否则会被当作成功：记入新鲜期、计入自适应的样本等。
+                if (e != null) ((AbsThrottle.Result) onDone).fail$(e);
+                else onDone.run();
+            }
+        }
+
+        private void untrack(Task task) {
+            if (task.timer != null) task.timer.cancel(false);
+            synchronized (this) {
+                final Task head = tasks.remove(task);
+                if (head != task || task.next != null) {
+                    Task first = null, last = null;
+                    for (Task t = head; t != null; t = t.next) {
+                        if (t == task) continue;
+                        if (first == null) first = t;
+                        else last.next = t;
+                        last = t;
+                    }
+                    if (last != null) last.next = null;
+                    if (first != null) tasks.put(first, first);
+                }
+            }
+        }
+
+        private class Key {
+            final T target;
+            final TAG tag;
+
+            Key(T target, TAG tag) {
+                this.target = target;
+                this.tag = tag;
+            }
+
+            @Override
+            public final boolean equals(Object o) {
+                if (!(o instanceof Tracker.Key)) return false;
+                final Tracker<?, ?>.Key key = (Tracker<?, ?>.Key) o;
+                return (identity ? key.target == target : key.target.equals(target))
+                        && (key.tag == null ? tag == null : key.tag.equals(tag));
+            }
+
+            @Override
+            public final int hashCode() {
+                return (identity ? System.identityHashCode(target) : target.hashCode()) * 31
+                        + (tag == null ? 0 : tag.hashCode());
+            }
+        }
+
+        private final class Task extends Key {
+            volatile Future<?> future;
+            volatile ScheduledFuture<?> timer;
+            volatile boolean timedOut;
+            Task next; // 标识相同的下一个任务，由Tracker.this同步
+
+            Task(T target, TAG tag) {
+                super(target, tag);
+            }
+        }
+    }
+
+    /**
+     * 各控制器的<code>ServiceExecutor</code>的共用实现：把任务提交到{@link ExecutorService}执行。
+     */
+    static abstract class Service<T, TAG> extends Tracker<T, TAG> {
+        private final ExecutorService service;
+
+        Service(ExecutorService service, boolean identity, long timeout, TimeUnit unit) {
+            super(identity, timeout, unit);
+            this.service = service;
+        }
+
+        /**
+         * 在<code>service</code>的线程中执行任务。
+         */
+        abstract void run(T target, TAG tag) throws Exception;
+
+        void exec(final T target, final TAG tag, Runnable onDone) {
+            submit(service, target, tag, new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    run(target, tag);
+                    return null;
+                }
+            }, onDone);
+        }
+    }
+
+    /**
+     * 各控制器的<code>FutureExecutor</code>的共用实现：任务由{@link CompletableFuture}表示。
+     */
+    static abstract class Supply<T, TAG> extends Tracker<T, TAG> {
+        Supply(boolean identity, long timeout, TimeUnit unit) {
+            super(identity, timeout, unit);
+        }
+
+        /**
+         * 发起任务。
+         *
+         * @return 不能为null.
+         */
+        abstract CompletableFuture<?> supply(T target, TAG tag);
+
+        void exec(T target, TAG tag, Runnable onDone) {
+            track(target, tag, supply(target, tag), onDone);
+        }
+    }
+}
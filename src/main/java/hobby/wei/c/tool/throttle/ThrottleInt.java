@@ -0,0 +1,385 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 适用于<code>int</code>范围（如页码、偏移量）的负载节流控制器，范围的端点使用缓存的{@link IntD}.
+ * <p>
+ * 各分类的索引（已完成、执行中、等待提交结果的范围等）都是{@link SorterIntR}, 即存放在{@link SorterInt}的<code>int[]</code>中，
+ * 输入、删除、合并都不再为索引分配节点；每个输入仍是一个{@link Range}对象，等待栈、执行中的表也仍以其为元素。
+ * <p>
+ * 更多细节，见{@link AbsThrottle}; 单独使用的<code>int</code>分拣器，见{@link SorterInt}.
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class ThrottleInt<TAG> extends AbsThrottle<IntD, Range<IntD>, TAG> {
+    /**
+     * @param counter  参见{@link Counter}, 可以是全局的。
+     * @param limit    同{@link SorterInt#takeSerial(int, boolean)}的第一个参数。
+     * @param minFirst 同{@link SorterInt#takeSerial(int, boolean)}的第二个参数。
+     * @param executor 任务执行者。
+     */
+    public ThrottleInt(Counter counter, int limit, boolean minFirst, Executor<TAG> executor) {
+        super(counter, limit, minFirst, executor);
+    }
+
+    public boolean put(int n, TAG tag, boolean promised) {
+        return put(n, n, tag, promised);
+    }
+
+    public boolean put(int from, int to, TAG tag, boolean promised) {
+        return super.put(new Range<>(IntD.of(from), IntD.of(to)), tag, promised);
+    }
+
+    public <V> CompletableFuture<V> submit(int n, TAG tag, boolean promised) {
+        return submit(n, n, tag, promised);
+    }
+
+    /**
+     * 同{@link #put(int, int, TAG, boolean)}, 但返回该范围的执行结果，详见{@link AbsThrottle#submit(AbsSorter.AbsR, Object, boolean)}.
+     * 需要{@link ResultExecutor}.
+     */
+    public <V> CompletableFuture<V> submit(int from, int to, TAG tag, boolean promised) {
+        return super.submit(new Range<>(IntD.of(from), IntD.of(to)), tag, promised);
+    }
+
+    public void drop(int n, TAG tag, boolean withPromised) {
+        drop(n, n, tag, withPromised);
+    }
+
+    public void drop(int from, int to, TAG tag, boolean withPromised) {
+        super.drop(new Range<>(IntD.of(from), IntD.of(to)), tag, withPromised);
+    }
+
+    public void cancel(int n, TAG tag, boolean withPromised) {
+        cancel(n, n, tag, withPromised);
+    }
+
+    public void cancel(int from, int to, TAG tag, boolean withPromised) {
+        super.cancel(new Range<>(IntD.of(from), IntD.of(to)), tag, withPromised);
+    }
+
+    /**
+     * 报告正在执行的范围的进度，见{@link AbsThrottle#progress(AbsSorter.AbsR, Object, float)}.
+     */
+    public void progress(int from, int to, TAG tag, float fraction) {
+        super.progress(new Range<>(IntD.of(from), IntD.of(to)), tag, fraction);
+    }
+
+    /**
+     * 打开promised任务的日志，重启之后尚未完成的promised范围会自动恢复执行。
+     * 详见{@link AbsThrottle#openJournal$(File, Codec, Codec, boolean)}.
+     *
+     * @param tags 标签的序列化。若标签总是null, 可以为null.
+     * @param sync 是否每次输入都刷到磁盘，否则只保证进程崩溃时不丢失。
+     */
+    public void openJournal(File file, Codec<TAG> tags, boolean sync) throws IOException {
+        openJournal$(file, new Codec<Range<IntD>>() {
+            @Override
+            public void write(Range<IntD> range, DataOutput out) throws IOException {
+                out.writeInt(range.from.n);
+                out.writeInt(range.to.n);
+            }
+
+            @Override
+            public Range<IntD> read(DataInput in) throws IOException {
+                final int from = in.readInt();
+                return new Range<>(IntD.of(from), IntD.of(in.readInt()));
+            }
+        }, tags, sync);
+    }
+
+    @Override
+    protected AbsSorter<IntD, Range<IntD>> newSorter() {
+        return new SorterIntR();
+    }
+
+    public abstract static class Executor<TAG> extends AbsExecutor<IntD, Range<IntD>, TAG> {
+        @Override
+        void execAsync$(Range<IntD> range, TAG tag, Runnable onDone) {
+            execAsync(range.from.n, range.to.n, tag, onDone);
+        }
+
+        @Override
+        void cancel$(Range<IntD> range, TAG tag) {
+            cancel(range.from.n, range.to.n, tag);
+        }
+
+        @Override
+        void expired$(Range<IntD> range, TAG tag) {
+            expired(range.from.n, range.to.n, tag);
+        }
+
+        /**
+         * 异步发起任务调用。
+         *
+         * @param from   范围起始（包括）。
+         * @param to     范围结束（包括）。
+         * @param tag    标签，同{@link #put(int, int, TAG, boolean)}的第三个参数。
+         * @param onDone 执行完成后的回调，无论成功还是失败。
+         */
+        protected abstract void execAsync(int from, int to, TAG tag, Runnable onDone);
+
+        /**
+         * 取消任务。
+         *
+         * @param from 范围起始（包括）。
+         * @param to   范围结束（包括）。
+         * @param tag  标签，同{@link #put(int, int, TAG, boolean)}的第三个参数。
+         */
+        protected abstract void cancel(int from, int to, TAG tag);
+
+        /**
+         * 等待中的范围过期而被清除，不会再执行，见{@link #setExpiry(long, TimeUnit)}. 默认什么也不做。
+         *
+         * @param from 范围起始（包括）。
+         * @param to   范围结束（包括）。
+         * @param tag  标签，同{@link #put(int, int, TAG, boolean)}的第三个参数。
+         */
+        protected void expired(int from, int to, TAG tag) {
+        }
+    }
+
+    /**
+     * 支持批量的任务执行者：{@link ThrottleInt}每一轮能派发的范围都会在一次{@link #execBatchAsync(long[], TAG, List)}调用中发出。
+     * 范围以{@link SorterInt#range(int, int)}打包为<code>long</code>, 用{@link SorterInt#from(long)}和{@link SorterInt#to(long)}取出端点。
+     */
+    public abstract static class BatchExecutor<TAG> extends Executor<TAG> {
+        @Override
+        final boolean batch$() {
+            return true;
+        }
+
+        @Override
+        final void execBatchAsync$(List<Range<IntD>> ranges, TAG tag, List<Runnable> onDones) {
+            final long[] packed = new long[ranges.size()];
+            for (int i = 0; i < packed.length; i++) {
+                final Range<IntD> r = ranges.get(i);
+                packed[i] = SorterInt.range(r.from.n, r.to.n);
+            }
+            execBatchAsync(packed, tag, onDones);
+        }
+
+        @Override
+        protected void execAsync(int from, int to, TAG tag, Runnable onDone) {
+            execBatchAsync(new long[]{SorterInt.range(from, to)}, tag, Collections.singletonList(onDone));
+        }
+
+        /**
+         * 批量异步发起任务调用。各范围仍分别完成或{@link #cancel(int, int, TAG) 取消}。
+         *
+         * @param ranges  打包的范围列表，见{@link SorterInt#range(int, int)}.
+         * @param tag     标签，同{@link #put(int, int, TAG, boolean)}的第三个参数。
+         * @param onDones 与<code>ranges</code>一一对应，每个范围执行完成后的回调，无论成功还是失败。
+         */
+        protected abstract void execBatchAsync(long[] ranges, TAG tag, List<Runnable> onDones);
+    }
+
+    /**
+     * 把任务提交到{@link ExecutorService}执行的任务执行者，不需要自己管理线程和取消：取消时{@link Future#cancel(boolean)
+     * cancel(true)}（任务还没开始则不再执行，已开始则中断线程），超时亦然。
+     *
+     * @see Tasks#newVirtualThreadPerTaskExecutor()
+     */
+    public abstract static class ServiceExecutor<TAG> extends Executor<TAG> {
+        private final Tasks.Service<Long, TAG> tasks;
+
+        public ServiceExecutor(ExecutorService service) {
+            this(service, 0, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @param timeout 单个任务的超时时间，<code>&lt;= 0</code>表示不超时。
+         */
+        public ServiceExecutor(ExecutorService service, long timeout, TimeUnit unit) {
+            this.tasks = new Tasks.Service<Long, TAG>(service, false, timeout, unit) {
+                @Override
+                void run(Long range, TAG tag) throws Exception {
+                    ServiceExecutor.this.run(SorterInt.from(range), SorterInt.to(range), tag);
+                }
+
+                @Override
+                void failed(Long range, TAG tag, Throwable e) {
+                    onFailed(SorterInt.from(range), SorterInt.to(range), tag, e);
+                }
+            };
+        }
+
+        @Override
+        protected final void execAsync(int from, int to, TAG tag, Runnable onDone) {
+            tasks.exec(SorterInt.range(from, to), tag, onDone);
+        }
+
+        @Override
+        protected final void cancel(int from, int to, TAG tag) {
+            tasks.cancel(SorterInt.range(from, to), tag);
+        }
+
+        /**
+         * 在<code>service</code>的线程中执行任务。
+         *
+         * @param from 范围起始（包括）。
+         * @param to   范围结束（包括）。
+         * @param tag  标签，同{@link #put(int, int, TAG, boolean)}的第三个参数。
+         */
+        protected abstract void run(int from, int to, TAG tag) throws Exception;
+
+        /**
+         * 任务抛出异常或超时（{@link java.util.concurrent.TimeoutException}）时回调，被取消的不算。默认什么也不做。
+         */
+        protected void onFailed(int from, int to, TAG tag, Throwable e) {
+        }
+    }
+
+    /**
+     * 以{@link CompletableFuture}表示任务的任务执行者。取消时{@link CompletableFuture#cancel(boolean) cancel}掉，
+     * 超时则以{@link java.util.concurrent.TimeoutException}异常结束。
+     */
+    public abstract static class FutureExecutor<TAG> extends Executor<TAG> {
+        private final Tasks.Supply<Long, TAG> tasks;
+
+        public FutureExecutor() {
+            this(0, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @param timeout 单个任务的超时时间，<code>&lt;= 0</code>表示不超时。
+         */
+        public FutureExecutor(long timeout, TimeUnit unit) {
+            this.tasks = new Tasks.Supply<Long, TAG>(false, timeout, unit) {
+                @Override
+                CompletableFuture<?> supply(Long range, TAG tag) {
+                    return FutureExecutor.this.supply(SorterInt.from(range), SorterInt.to(range), tag);
+                }
+
+                @Override
+                void failed(Long range, TAG tag, Throwable e) {
+                    onFailed(SorterInt.from(range), SorterInt.to(range), tag, e);
+                }
+            };
+        }
+
+        @Override
+        protected final void execAsync(int from, int to, TAG tag, Runnable onDone) {
+            tasks.exec(SorterInt.range(from, to), tag, onDone);
+        }
+
+        @Override
+        protected final void cancel(int from, int to, TAG tag) {
+            tasks.cancel(SorterInt.range(from, to), tag);
+        }
+
+        /**
+         * 发起任务。
+         *
+         * @param from 范围起始（包括）。
+         * @param to   范围结束（包括）。
+         * @param tag  标签，同{@link #put(int, int, TAG, boolean)}的第三个参数。
+         * @return 表示该任务的{@link CompletableFuture}, 不能为null.
+         */
+        protected abstract CompletableFuture<?> supply(int from, int to, TAG tag);
+
+        /**
+         * 任务异常结束或超时（{@link java.util.concurrent.TimeoutException}）时回调，被取消的不算。默认什么也不做。
+         */
+        protected void onFailed(int from, int to, TAG tag, Throwable e) {
+        }
+    }
+
+    /**
+     * 支持{@link #submit(int, int, TAG, boolean) submit}的任务执行者，以{@link Completion}回传结果。
+     * <p>
+     * 执行的范围可能大于（合并了多个）或小于（拆开执行）某个submit的范围，因此需要能{@link #slice(Object, int, int, int, int)
+     * 切分}和{@link #join(int, int, long[], List) 合并}结果。
+     *
+     * @param <V> 结果类型。
+     */
+    public abstract static class ResultExecutor<TAG, V> extends Executor<TAG> {
+        @Override
+        final boolean results$() {
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        final Object slice$(Object result, Range<IntD> range, Range<IntD> part) {
+            return slice((V) result, range.from.n, range.to.n, part.from.n, part.to.n);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        final Object join$(Range<IntD> range, List<Range<IntD>> parts, List<Object> results) {
+            if (parts.size() == 1) return results.get(0);
+            final long[] packed = new long[parts.size()];
+            for (int i = 0; i < packed.length; i++) {
+                final Range<IntD> r = parts.get(i);
+                packed[i] = SorterInt.range(r.from.n, r.to.n);
+            }
+            return join(range.from.n, range.to.n, packed, (List<V>) results);
+        }
+
+        @Override
+        protected final void execAsync(int from, int to, TAG tag, Runnable onDone) {
+            execAsync(from, to, tag, AbsThrottle.<V>completion(onDone));
+        }
+
+        /**
+         * 异步发起任务调用。
+         *
+         * @param from       范围起始（包括），该范围可能由多个submit的范围合并而成。
+         * @param to         范围结束（包括）。
+         * @param tag        标签，同{@link #put(int, int, TAG, boolean)}的第三个参数。
+         * @param completion 执行完成后的回调，无论成功还是失败。
+         */
+        protected abstract void execAsync(int from, int to, TAG tag, Completion<V> completion);
+
+        /**
+         * 从执行结果中切出一部分。默认不切分，即把整个结果分发给每个等待其中某部分的submit.
+         *
+         * @param result   范围<code>[from, to]</code>的执行结果。
+         * @param from     执行的范围起始（包括）。
+         * @param to       执行的范围结束（包括）。
+         * @param partFrom 需要的部分的起始（包括），不小于<code>from</code>.
+         * @param partTo   需要的部分的结束（包括），不大于<code>to</code>.
+         */
+        protected V slice(V result, int from, int to, int partFrom, int partTo) {
+            return result;
+        }
+
+        /**
+         * 合并分几次执行的各部分的结果（仅一部分时不会调用）。
+         *
+         * @param from    submit的范围起始（包括）。
+         * @param to      submit的范围结束（包括）。
+         * @param parts   打包的各部分（见{@link SorterInt#range(int, int)}），按从小到大的顺序，合起来正好是<code>[from, to]</code>.
+         * @param results 与<code>parts</code>一一对应，是{@link #slice(Object, int, int, int, int)}的结果。
+         */
+        protected abstract V join(int from, int to, long[] parts, List<V> results);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+/**
+ * 负载节流控制器的运行情况监听器，见{@link AbsThrottle#setListener(ThrottleListener)}. 现成的统计实现见{@link ThrottleMetrics}.
+ * <p>
+ * 各方法在控制器的工作线程或输入的线程中同步回调（部分在锁内），应尽快返回，且不可再调用控制器的方法。
+ *
+ * @param <TAG> 同控制器的TAG.
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public interface ThrottleListener<TAG> {
+    void onPut(TAG tag, boolean promised);
+
+    void onDrop(TAG tag, boolean withPromised);
+
+    void onCancel(TAG tag, boolean withPromised);
+
+    /**
+     * 派发前合并时，有<code>absorbed</code>个等待中的范围被吸收进了同一个输出。
+     */
+    void onMerge(TAG tag, int absorbed);
+
+    /**
+     * 满载队列超限，挤出了一个范围（若正在执行则同时被取消）。
+     */
+    void onEvict(TAG tag);
+
+    /**
+     * 等待中的范围（的一部分）过期被清除，见{@link AbsThrottle#setExpiry(long, java.util.concurrent.TimeUnit)}.
+     */
+    void onExpire(TAG tag);
+
+    /**
+     * 派发了一个预取的范围，见{@link AbsThrottle#setPrefetch(int)}.
+     */
+    void onPrefetch(TAG tag);
+
+    /**
+     * 一个预取的范围有了结果。
+     *
+     * @param hit true 被之后的输入用上了，false 浪费了（输入越过了它、改变了方向，或被取消、失败）。
+     */
+    void onPrefetched(TAG tag, boolean hit);
+
+    /**
+     * 等待队列已满，见{@link AbsThrottle#setCapacity(int, int, Overflow, long, java.util.concurrent.TimeUnit)}.
+     *
+     * @param dropped true 丢弃了一个最早的等待中范围，false 输入被拒绝（包括阻塞超时）。
+     */
+    void onOverflow(TAG tag, boolean dropped);
+
+    /**
+     * 该分类等待中的范围数达到了上限（<code>high</code>），或之后回落到了上限的一半及以下。上游的生产者可据此放慢或恢复。
+     */
+    void onPressure(TAG tag, boolean high);
+
+    /**
+     * 同{@link #onPressure(Object, boolean)}, 但针对全部分类的上限。
+     */
+    void onPressure(boolean high);
+
+    /**
+     * 某个输入（的一部分）第一次被派发执行。
+     *
+     * @param queuedNanos 从输入到派发的时间。
+     */
+    void onDispatch(TAG tag, long queuedNanos);
+
+    /**
+     * 某个派发的范围执行结束（被取消的除外）。
+     *
+     * @param execNanos 从派发到完成的时间。
+     * @param success   对于普通的任务执行者，总是true; 现成的<code>ServiceExecutor</code>和<code>FutureExecutor</code>在任务失败或超时时为false.
+     */
+    void onComplete(TAG tag, long execNanos, boolean success);
+
+    /**
+     * 每轮派发或每个任务结束之后，该分类当前的等待中和正在执行的范围个数（均包括promised的）。
+     */
+    void onSizes(TAG tag, int waiting, int executing);
+
+    /**
+     * 空实现，按需覆写。
+     */
+    class Adapter<TAG> implements ThrottleListener<TAG> {
+        @Override
+        public void onPut(TAG tag, boolean promised) {
+        }
+
+        @Override
+        public void onDrop(TAG tag, boolean withPromised) {
+        }
+
+        @Override
+        public void onCancel(TAG tag, boolean withPromised) {
+        }
+
+        @Override
+        public void onMerge(TAG tag, int absorbed) {
+        }
+
+        @Override
+        public void onEvict(TAG tag) {
+        }
+
+        @Override
+        public void onExpire(TAG tag) {
+        }
+
+        @Override
+        public void onPrefetch(TAG tag) {
+        }
+
+        @Override
+        public void onPrefetched(TAG tag, boolean hit) {
+        }
+
+        @Override
+        public void onOverflow(TAG tag, boolean dropped) {
+        }
+
+        @Override
+        public void onPressure(TAG tag, boolean high) {
+        }
+
+        @Override
+        public void onPressure(boolean high) {
+        }
+
+        @Override
+        public void onDispatch(TAG tag, long queuedNanos) {
+        }
+
+        @Override
+        public void onComplete(TAG tag, long execNanos, boolean success) {
+        }
+
+        @Override
+        public void onSizes(TAG tag, int waiting, int executing) {
+        }
+    }
+}
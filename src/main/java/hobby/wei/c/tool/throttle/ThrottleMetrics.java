@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按分类统计的{@link ThrottleListener}实现：各种计数、当前队列大小，以及排队和执行时间的直方图。均为无锁的原子计数。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class ThrottleMetrics<TAG> implements ThrottleListener<TAG> {
+    private static final Object NULL = new Object();
+    private final ConcurrentMap<Object, Stats> map = new ConcurrentHashMap<>();
+    private volatile boolean pressed;
+
+    /**
+     * @return 该分类的统计，没有则创建。
+     */
+    public Stats stats(TAG tag) {
+        final Object key = tag == null ? NULL : tag;
+        Stats stats = map.get(key);
+        if (stats == null) {
+            final Stats created = new Stats();
+            stats = map.putIfAbsent(key, created);
+            if (stats == null) stats = created;
+        }
+        return stats;
+    }
+
+    /**
+     * @return 各分类的统计（<code>null</code>分类的键为<code>null</code>）。
+     */
+    @SuppressWarnings("unchecked")
+    public Map<TAG, Stats> snapshot() {
+        final Map<TAG, Stats> result = new HashMap<>();
+        for (Map.Entry<Object, Stats> entry : map.entrySet()) {
+            result.put(entry.getKey() == NULL ? null : (TAG) entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * 全部分类的等待队列是否处于高压状态，见{@link #onPressure(boolean)}.
+     */
+    public boolean pressed() {
+        return pressed;
+    }
+
+    @Override
+    public void onPut(TAG tag, boolean promised) {
+        stats(tag).puts.incrementAndGet();
+    }
+
+    @Override
+    public void onDrop(TAG tag, boolean withPromised) {
+        stats(tag).drops.incrementAndGet();
+    }
+
+    @Override
+    public void onCancel(TAG tag, boolean withPromised) {
+        stats(tag).cancels.incrementAndGet();
+    }
+
+    @Override
+    public void onMerge(TAG tag, int absorbed) {
+        stats(tag).absorbed.addAndGet(absorbed);
+    }
+
+    @Override
+    public void onEvict(TAG tag) {
+        stats(tag).evictions.incrementAndGet();
+    }
+
+    @Override
+    public void onExpire(TAG tag) {
+        stats(tag).expirations.incrementAndGet();
+    }
+
+    @Override
+    public void onPrefetch(TAG tag) {
+        stats(tag).prefetches.incrementAndGet();
+    }
+
+    @Override
+    public void onPrefetched(TAG tag, boolean hit) {
+        final Stats stats = stats(tag);
+        (hit ? stats.prefetchHits : stats.prefetchWaste).incrementAndGet();
+    }
+
+    @Override
+    public void onOverflow(TAG tag, boolean dropped) {
+        final Stats stats = stats(tag);
+        (dropped ? stats.overflowDrops : stats.rejections).incrementAndGet();
+    }
+
+    @Override
+    public void onPressure(TAG tag, boolean high) {
+        stats(tag).pressed = high;
+    }
+
+    @Override
+    public void onPressure(boolean high) {
+        pressed = high;
+    }
+
+    @Override
+    public void onDispatch(TAG tag, long queuedNanos) {
+        stats(tag).queued.record(queuedNanos);
+    }
+
+    @Override
+    public void onComplete(TAG tag, long execNanos, boolean success) {
+        final Stats stats = stats(tag);
+        stats.executed.record(execNanos);
+        if (!success) stats.failures.incrementAndGet();
+    }
+
+    @Override
+    public void onSizes(TAG tag, int waiting, int executing) {
+        final Stats stats = stats(tag);
+        stats.waiting = waiting;
+        stats.executing = executing;
+    }
+
+    public static final class Stats {
+        public final AtomicLong puts = new AtomicLong(), drops = new AtomicLong(), cancels = new AtomicLong();
+        /**
+         * 被合并吸收的范围数、被挤出局的范围数、过期被清除的范围数、执行失败数。
+         */
+        public final AtomicLong absorbed = new AtomicLong(), evictions = new AtomicLong(), expirations = new AtomicLong(),
+                failures = new AtomicLong();
+        /**
+         * 预取的范围数，及其中被用上的和浪费的。
+         */
+        public final AtomicLong prefetches = new AtomicLong(), prefetchHits = new AtomicLong(), prefetchWaste = new AtomicLong();
+        /**
+         * 等待队列已满时丢弃的和拒绝的输入数，以及当前是否处于高压状态。
+         */
+        public final AtomicLong overflowDrops = new AtomicLong(), rejections = new AtomicLong();
+        public volatile boolean pressed;
+        /**
+         * 最近一次的等待中和正在执行的范围个数。
+         */
+        public volatile int waiting, executing;
+        /**
+         * 排队时间和执行时间（纳秒）。
+         */
+        public final Histogram queued = new Histogram(), executed = new Histogram();
+
+        @Override
+        public String toString() {
+            return "Stats{puts:" + puts + ", drops:" + drops + ", cancels:" + cancels + ", absorbed:" + absorbed
+                    + ", evictions:" + evictions + ", expirations:" + expirations + ", failures:" + failures + ", prefetches:" + prefetches
+                    + ", prefetchHits:" + prefetchHits + ", prefetchWaste:" + prefetchWaste + ", overflowDrops:" + overflowDrops + ", rejections:" + rejections
+                    + ", pressed:" + pressed + ", waiting:" + waiting
+                    + ", executing:" + executing + ", queued:" + queued + ", executed:" + executed + '}';
+        }
+    }
+
+    /**
+     * 以2的幂为桶的直方图：第<code>i</code>个桶记录<code>[2^(i-1), 2^i)</code>的值（第0个桶为<code>&lt;= 0</code>的值）。
+     */
+    public static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final AtomicLong count = new AtomicLong(), sum = new AtomicLong();
+
+        public void record(long value) {
+            buckets.incrementAndGet(value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+        }
+
+        public long count() {
+            return count.get();
+        }
+
+        public long mean() {
+            final long n = count.get();
+            return n == 0 ? 0 : sum.get() / n;
+        }
+
+        /**
+         * @param q <code>[0, 1]</code>.
+         * @return 估算的分位值（所在桶的上界）。
+         */
+        public long quantile(double q) {
+            final long n = count.get();
+            if (n == 0) return 0;
+            final long rank = Math.max(1, (long) Math.ceil(q * n));
+            long seen = 0;
+            for (int i = 0; i < 64; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return i == 0 ? 0 : i >= 63 ? Long.MAX_VALUE : (1L << i) - 1;
+            }
+            return Long.MAX_VALUE;
+        }
+
+        public long[] buckets() {
+            final long[] result = new long[64];
+            for (int i = 0; i < result.length; i++) result[i] = buckets.get(i);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "{count:" + count() + ", mean:" + mean() + ", p50:" + quantile(.5) + ", p99:" + quantile(.99) + '}';
+        }
+    }
+}
@@ -16,6 +16,18 @@
 
 package hobby.wei.c.tool.throttle;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 /**
  * 适用于{@link SorterO}的负载节流控制器。
  * <p>
@@ -41,9 +53,20 @@ public class ThrottleO<O, TAG> extends AbsThrottle<Linkless<O>, Rs<O>, TAG> {
      * @param obj      任务的参数或key。
      * @param tag      标签，用于给obj分类。
      * @param promised 该任务是否[承诺完成]（不会被挤出局）。
+     * @return false 等待队列已满而被拒绝，见{@link #setCapacity(int, int, Overflow, long, TimeUnit)}.
+     */
+    public boolean put(O obj, TAG tag, boolean promised) {
+        return super.put(new Rs<>(obj), tag, promised);
+    }
+
+    /**
+     * 同{@link #put(O, TAG, boolean)}, 但返回该任务的结果。需要{@link ResultExecutor}.
+     *
+     * @return 任务被挤出局、丢弃或取消时以{@link java.util.concurrent.CancellationException}结束。
+     * @throws IllegalStateException 任务执行者不是{@link ResultExecutor}.
      */
-    public void put(O obj, TAG tag, boolean promised) {
-        super.put(new Rs<>(obj), tag, promised);
+    public <V> CompletableFuture<V> submit(O obj, TAG tag, boolean promised) {
+        return super.submit(new Rs<>(obj), tag, promised);
     }
 
     /**
@@ -68,6 +91,38 @@ public class ThrottleO<O, TAG> extends AbsThrottle<Linkless<O>, Rs<O>, TAG> {
         super.cancel(new Rs<>(obj), tag, withPromised);
     }
 
+    /**
+     * 报告正在执行的任务的进度，见{@link AbsThrottle#progress(AbsSorter.AbsR, Object, float)}.
+     *
+     * @param obj      任务的参数或key。
+     * @param fraction <code>[0, 1]</code>.
+     */
+    public void progress(O obj, TAG tag, float fraction) {
+        super.progress(new Rs<>(obj), tag, fraction);
+    }
+
+    /**
+     * 打开promised任务的日志，重启之后尚未完成的promised任务会自动恢复执行。
+     * 详见{@link AbsThrottle#openJournal$(File, Codec, Codec, boolean)}.
+     *
+     * @param objects 任务参数的序列化。
+     * @param tags    标签的序列化。若标签总是null, 可以为null.
+     * @param sync    是否每次输入都刷到磁盘，否则只保证进程崩溃时不丢失。
+     */
+    public void openJournal(File file, final Codec<O> objects, Codec<TAG> tags, boolean sync) throws IOException {
+        openJournal$(file, new Codec<Rs<O>>() {
+            @Override
+            public void write(Rs<O> range, DataOutput out) throws IOException {
+                objects.write(range.r.obj, out);
+            }
+
+            @Override
+            public Rs<O> read(DataInput in) throws IOException {
+                return new Rs<>(objects.read(in));
+            }
+        }, tags, sync);
+    }
+
     @Override
     protected AbsSorter<Linkless<O>, Rs<O>> newSorter() {
         return new SorterO<>();
@@ -84,6 +139,11 @@ public class ThrottleO<O, TAG> extends AbsThrottle<Linkless<O>, Rs<O>, TAG> {
             cancel(range.r.obj, tag);
         }
 
+        @Override
+        void expired$(Rs<O> range, TAG tag) {
+            expired(range.r.obj, tag);
+        }
+
         /**
          * 异步发起任务调用。
          *
@@ -100,5 +160,182 @@ public class ThrottleO<O, TAG> extends AbsThrottle<Linkless<O>, Rs<O>, TAG> {
          * @param tag 标签，同{@link #put(O, TAG, boolean)}的第二个参数。
          */
         protected abstract void cancel(O obj, TAG tag);
+
+        /**
+         * 等待中的任务过期而被清除，不会再执行，见{@link #setExpiry(long, TimeUnit)}. 默认什么也不做。
+         *
+         * @param obj 任务的参数或key。
+         * @param tag 标签，同{@link #put(O, TAG, boolean)}的第二个参数。
+         */
+        protected void expired(O obj, TAG tag) {
+        }
+    }
+
+    /**
+     * 支持批量的任务执行者：{@link ThrottleO}每一轮能派发的任务都会在一次{@link #execBatchAsync(List, TAG, List)}调用中发出。
+     */
+    public abstract static class BatchExecutor<O, TAG> extends Executor<O, TAG> {
+        @Override
+        final boolean batch$() {
+            return true;
+        }
+
+        @Override
+        final void execBatchAsync$(List<Rs<O>> ranges, TAG tag, List<Runnable> onDones) {
+            final List<O> objs = new ArrayList<>(ranges.size());
+            for (Rs<O> rs : ranges) {
+                objs.add(rs.r.obj);
+            }
+            execBatchAsync(objs, tag, onDones);
+        }
+
+        @Override
+        protected void execAsync(O obj, TAG tag, Runnable onDone) {
+            execBatchAsync(Collections.singletonList(obj), tag, Collections.singletonList(onDone));
+        }
+
+        /**
+         * 批量异步发起任务调用。各任务仍分别完成或{@link #cancel(O, TAG) 取消}。
+         *
+         * @param objs    任务的参数或key列表。
+         * @param tag     标签，同{@link #put(O, TAG, boolean)}的第二个参数。
+         * @param onDones 与<code>objs</code>一一对应，每个任务执行完成后的回调，无论成功还是失败。
+         */
+        protected abstract void execBatchAsync(List<O> objs, TAG tag, List<Runnable> onDones);
+    }
+
+    /**
+     * 把任务提交到{@link ExecutorService}执行的任务执行者，不需要自己管理线程和取消：取消时{@link Future#cancel(boolean)
+     * cancel(true)}（任务还没开始则不再执行，已开始则中断线程），超时亦然。
+     *
+     * @see Tasks#newVirtualThreadPerTaskExecutor()
+     */
+    public abstract static class ServiceExecutor<O, TAG> extends Executor<O, TAG> {
+        private final Tasks.Service<O, TAG> tasks;
+
+        public ServiceExecutor(ExecutorService service) {
+            this(service, 0, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @param timeout 单个任务的超时时间，<code>&lt;= 0</code>表示不超时。
+         */
+        public ServiceExecutor(ExecutorService service, long timeout, TimeUnit unit) {
+            this.tasks = new Tasks.Service<O, TAG>(service, true, timeout, unit) {
+                @Override
+                void run(O obj, TAG tag) throws Exception {
+                    ServiceExecutor.this.run(obj, tag);
+                }
+
+                @Override
+                void failed(O obj, TAG tag, Throwable e) {
+                    onFailed(obj, tag, e);
+                }
+            };
+        }
+
+        @Override
+        protected final void execAsync(O obj, TAG tag, Runnable onDone) {
+            tasks.exec(obj, tag, onDone);
+        }
+
+        @Override
+        protected final void cancel(O obj, TAG tag) {
+            tasks.cancel(obj, tag);
+        }
+
+        /**
+         * 在<code>service</code>的线程中执行任务。
+         *
+         * @param obj 任务的参数或key。
+         * @param tag 标签，同{@link #put(O, TAG, boolean)}的第二个参数。
+         */
+        protected abstract void run(O obj, TAG tag) throws Exception;
+
+        /**
+         * 任务抛出异常或超时（{@link java.util.concurrent.TimeoutException}）时回调，被取消的不算。默认什么也不做。
+         */
+        protected void onFailed(O obj, TAG tag, Throwable e) {
+        }
+    }
+
+    /**
+     * 以{@link CompletableFuture}表示任务的任务执行者。取消时{@link CompletableFuture#cancel(boolean) cancel}掉，
+     * 超时则以{@link java.util.concurrent.TimeoutException}异常结束。
+     */
+    public abstract static class FutureExecutor<O, TAG> extends Executor<O, TAG> {
+        private final Tasks.Supply<O, TAG> tasks;
+
+        public FutureExecutor() {
+            this(0, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @param timeout 单个任务的超时时间，<code>&lt;= 0</code>表示不超时。
+         */
+        public FutureExecutor(long timeout, TimeUnit unit) {
+            this.tasks = new Tasks.Supply<O, TAG>(true, timeout, unit) {
+                @Override
+                CompletableFuture<?> supply(O obj, TAG tag) {
+                    return FutureExecutor.this.supply(obj, tag);
+                }
+
+                @Override
+                void failed(O obj, TAG tag, Throwable e) {
+                    onFailed(obj, tag, e);
+                }
+            };
+        }
+
+        @Override
+        protected final void execAsync(O obj, TAG tag, Runnable onDone) {
+            tasks.exec(obj, tag, onDone);
+        }
+
+        @Override
+        protected final void cancel(O obj, TAG tag) {
+            tasks.cancel(obj, tag);
+        }
+
+        /**
+         * 发起任务。
+         *
+         * @param obj 任务的参数或key。
+         * @param tag 标签，同{@link #put(O, TAG, boolean)}的第二个参数。
+         * @return 表示该任务的{@link CompletableFuture}, 不能为null.
+         */
+        protected abstract CompletableFuture<?> supply(O obj, TAG tag);
+
+        /**
+         * 任务异常结束或超时（{@link java.util.concurrent.TimeoutException}）时回调，被取消的不算。默认什么也不做。
+         */
+        protected void onFailed(O obj, TAG tag, Throwable e) {
+        }
+    }
+
+    /**
+     * 支持{@link #submit(O, TAG, boolean) submit}的任务执行者，以{@link Completion}回传结果。
+     *
+     * @param <V> 结果类型。
+     */
+    public abstract static class ResultExecutor<O, TAG, V> extends Executor<O, TAG> {
+        @Override
+        final boolean results$() {
+            return true;
+        }
+
+        @Override
+        protected final void execAsync(O obj, TAG tag, Runnable onDone) {
+            execAsync(obj, tag, AbsThrottle.<V>completion(onDone));
+        }
+
+        /**
+         * 异步发起任务调用。
+         *
+         * @param obj        任务的参数或key。
+         * @param tag        标签，同{@link #put(O, TAG, boolean)}的第二个参数。
+         * @param completion 执行完成后的回调，无论成功还是失败。
+         */
+        protected abstract void execAsync(O obj, TAG tag, Completion<V> completion);
     }
 }
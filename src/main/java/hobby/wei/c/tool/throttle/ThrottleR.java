@@ -16,6 +16,17 @@
 
 package hobby.wei.c.tool.throttle;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 /**
  * 适用于{@link SorterR}的负载节流控制器。
  * <p>
@@ -37,20 +48,37 @@ public class ThrottleR<D extends Discrete<D>, TAG> extends AbsThrottle<D, Range<
         super(counter, limit, minFirst, executor);
     }
 
-    public void put(D discrete, TAG tag, boolean promised) {
-        put(discrete, discrete, tag, promised);
+    public boolean put(D discrete, TAG tag, boolean promised) {
+        return put(discrete, discrete, tag, promised);
     }
 
-    public void put(D from, D to, TAG tag, boolean promised) {
-        put(new Range<>(from, to), tag, promised);
+    public boolean put(D from, D to, TAG tag, boolean promised) {
+        return put(new Range<>(from, to), tag, promised);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void put(Range<D> range, TAG tag, boolean promised) {
-        super.put(range, tag, promised);
+    public boolean put(Range<D> range, TAG tag, boolean promised) {
+        return super.put(range, tag, promised);
+    }
+
+    public <V> CompletableFuture<V> submit(D discrete, TAG tag, boolean promised) {
+        return submit(discrete, discrete, tag, promised);
+    }
+
+    public <V> CompletableFuture<V> submit(D from, D to, TAG tag, boolean promised) {
+        return submit(new Range<>(from, to), tag, promised);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 需要{@link ResultExecutor}.
+     */
+    @Override
+    public <V> CompletableFuture<V> submit(Range<D> range, TAG tag, boolean promised) {
+        return super.submit(range, tag, promised);
     }
 
     public void drop(D discrete, TAG tag, boolean promised) {
@@ -85,6 +113,42 @@ public class ThrottleR<D extends Discrete<D>, TAG> extends AbsThrottle<D, Range<
         super.cancel(range, tag, promised);
     }
 
+    public void progress(D from, D to, TAG tag, float fraction) {
+        progress(new Range<>(from, to), tag, fraction);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void progress(Range<D> range, TAG tag, float fraction) {
+        super.progress(range, tag, fraction);
+    }
+
+    /**
+     * 打开promised任务的日志，重启之后尚未完成的promised范围会自动恢复执行。
+     * 详见{@link AbsThrottle#openJournal$(File, Codec, Codec, boolean)}.
+     *
+     * @param discretes 范围端点的序列化。
+     * @param tags      标签的序列化。若标签总是null, 可以为null.
+     * @param sync      是否每次输入都刷到磁盘，否则只保证进程崩溃时不丢失。
+     */
+    public void openJournal(File file, final Codec<D> discretes, Codec<TAG> tags, boolean sync) throws IOException {
+        openJournal$(file, new Codec<Range<D>>() {
+            @Override
+            public void write(Range<D> range, DataOutput out) throws IOException {
+                discretes.write(range.from, out);
+                discretes.write(range.to, out);
+            }
+
+            @Override
+            public Range<D> read(DataInput in) throws IOException {
+                final D from = discretes.read(in);
+                return new Range<>(from, discretes.read(in));
+            }
+        }, tags, sync);
+    }
+
     @Override
     protected AbsSorter<D, Range<D>> newSorter() {
         return new SorterR<D>();
@@ -101,6 +165,11 @@ public class ThrottleR<D extends Discrete<D>, TAG> extends AbsThrottle<D, Range<
             cancel(range, tag);
         }
 
+        @Override
+        void expired$(Range<D> range, TAG tag) {
+            expired(range, tag);
+        }
+
         /**
          * 异步发起任务调用。
          *
@@ -117,5 +186,213 @@ public class ThrottleR<D extends Discrete<D>, TAG> extends AbsThrottle<D, Range<
          * @param tag   标签，同{@link #put(AbsSorter.AbsR, TAG, boolean)}的第二个参数。
          */
         protected abstract void cancel(Range<D> range, TAG tag);
+
+        /**
+         * 等待中的范围过期而被清除，不会再执行，见{@link #setExpiry(long, TimeUnit)}. 默认什么也不做。
+         *
+         * @param range 某次输入中尚未派发的部分。
+         * @param tag   标签，同{@link #put(AbsSorter.AbsR, TAG, boolean)}的第二个参数。
+         */
+        protected void expired(Range<D> range, TAG tag) {
+        }
+    }
+
+    /**
+     * 支持批量的任务执行者：{@link ThrottleR}每一轮能派发的范围都会在一次{@link #execBatchAsync(List, TAG, List)}调用中发出。
+     */
+    public abstract static class BatchExecutor<D extends Discrete<D>, TAG> extends Executor<D, TAG> {
+        @Override
+        final boolean batch$() {
+            return true;
+        }
+
+        @Override
+        final void execBatchAsync$(List<Range<D>> ranges, TAG tag, List<Runnable> onDones) {
+            execBatchAsync(ranges, tag, onDones);
+        }
+
+        @Override
+        protected void execAsync(Range<D> range, TAG tag, Runnable onDone) {
+            execBatchAsync(Collections.singletonList(range), tag, Collections.singletonList(onDone));
+        }
+
+        /**
+         * 批量异步发起任务调用。各范围仍分别完成或{@link #cancel(Range, TAG) 取消}。
+         *
+         * @param ranges  范围参数列表，每个同{@link #put(AbsSorter.AbsR, TAG, boolean)}的第一个参数。
+         * @param tag     标签，同{@link #put(AbsSorter.AbsR, TAG, boolean)}的第二个参数。
+         * @param onDones 与<code>ranges</code>一一对应，每个范围执行完成后的回调，无论成功还是失败。
+         */
+        protected abstract void execBatchAsync(List<Range<D>> ranges, TAG tag, List<Runnable> onDones);
+    }
+
+    /**
+     * 把任务提交到{@link ExecutorService}执行的任务执行者，不需要自己管理线程和取消：取消时{@link Future#cancel(boolean)
+     * cancel(true)}（任务还没开始则不再执行，已开始则中断线程），超时亦然。
+     *
+     * @see Tasks#newVirtualThreadPerTaskExecutor()
+     */
+    public abstract static class ServiceExecutor<D extends Discrete<D>, TAG> extends Executor<D, TAG> {
+        private final Tasks.Service<Range<D>, TAG> tasks;
+
+        public ServiceExecutor(ExecutorService service) {
+            this(service, 0, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @param timeout 单个任务的超时时间，<code>&lt;= 0</code>表示不超时。
+         */
+        public ServiceExecutor(ExecutorService service, long timeout, TimeUnit unit) {
+            this.tasks = new Tasks.Service<Range<D>, TAG>(service, true, timeout, unit) {
+                @Override
+                void run(Range<D> range, TAG tag) throws Exception {
+                    ServiceExecutor.this.run(range, tag);
+                }
+
+                @Override
+                void failed(Range<D> range, TAG tag, Throwable e) {
+                    onFailed(range, tag, e);
+                }
+            };
+        }
+
+        @Override
+        protected final void execAsync(Range<D> range, TAG tag, Runnable onDone) {
+            tasks.exec(range, tag, onDone);
+        }
+
+        @Override
+        protected final void cancel(Range<D> range, TAG tag) {
+            tasks.cancel(range, tag);
+        }
+
+        /**
+         * 在<code>service</code>的线程中执行任务。
+         *
+         * @param range 范围参数，同{@link #put(AbsSorter.AbsR, TAG, boolean)}的第一个参数。
+         * @param tag   标签，同{@link #put(AbsSorter.AbsR, TAG, boolean)}的第二个参数。
+         */
+        protected abstract void run(Range<D> range, TAG tag) throws Exception;
+
+        /**
+         * 任务抛出异常或超时（{@link java.util.concurrent.TimeoutException}）时回调，被取消的不算。默认什么也不做。
+         */
+        protected void onFailed(Range<D> range, TAG tag, Throwable e) {
+        }
+    }
+
+    /**
+     * 以{@link CompletableFuture}表示任务的任务执行者。取消时{@link CompletableFuture#cancel(boolean) cancel}掉，
+     * 超时则以{@link java.util.concurrent.TimeoutException}异常结束。
+     */
+    public abstract static class FutureExecutor<D extends Discrete<D>, TAG> extends Executor<D, TAG> {
+        private final Tasks.Supply<Range<D>, TAG> tasks;
+
+        public FutureExecutor() {
+            this(0, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @param timeout 单个任务的超时时间，<code>&lt;= 0</code>表示不超时。
+         */
+        public FutureExecutor(long timeout, TimeUnit unit) {
+            this.tasks = new Tasks.Supply<Range<D>, TAG>(true, timeout, unit) {
+                @Override
+                CompletableFuture<?> supply(Range<D> range, TAG tag) {
+                    return FutureExecutor.this.supply(range, tag);
+                }
+
+                @Override
+                void failed(Range<D> range, TAG tag, Throwable e) {
+                    onFailed(range, tag, e);
+                }
+            };
+        }
+
+        @Override
+        protected final void execAsync(Range<D> range, TAG tag, Runnable onDone) {
+            tasks.exec(range, tag, onDone);
+        }
+
+        @Override
+        protected final void cancel(Range<D> range, TAG tag) {
+            tasks.cancel(range, tag);
+        }
+
+        /**
+         * 发起任务。
+         *
+         * @param range 范围参数，同{@link #put(AbsSorter.AbsR, TAG, boolean)}的第一个参数。
+         * @param tag   标签，同{@link #put(AbsSorter.AbsR, TAG, boolean)}的第二个参数。
+         * @return 表示该任务的{@link CompletableFuture}, 不能为null.
+         */
+        protected abstract CompletableFuture<?> supply(Range<D> range, TAG tag);
+
+        /**
+         * 任务异常结束或超时（{@link java.util.concurrent.TimeoutException}）时回调，被取消的不算。默认什么也不做。
+         */
+        protected void onFailed(Range<D> range, TAG tag, Throwable e) {
+        }
+    }
+
+    /**
+     * 支持{@link #submit(Range, TAG, boolean) submit}的任务执行者，以{@link Completion}回传结果。
+     * <p>
+     * 执行的范围可能大于（合并了多个）或小于（拆开执行）某个submit的范围，因此需要能{@link #slice(Object, Range, Range)
+     * 切分}和{@link #join(Range, List, List) 合并}结果。
+     *
+     * @param <V> 结果类型。
+     */
+    public abstract static class ResultExecutor<D extends Discrete<D>, TAG, V> extends Executor<D, TAG> {
+        @Override
+        final boolean results$() {
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        final Object slice$(Object result, Range<D> range, Range<D> part) {
+            return slice((V) result, range, part);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        final Object join$(Range<D> range, List<Range<D>> parts, List<Object> results) {
+            return parts.size() == 1 ? results.get(0) : join(range, parts, (List<V>) results);
+        }
+
+        @Override
+        protected final void execAsync(Range<D> range, TAG tag, Runnable onDone) {
+            execAsync(range, tag, AbsThrottle.<V>completion(onDone));
+        }
+
+        /**
+         * 异步发起任务调用。
+         *
+         * @param range      范围参数，可能由多个submit的范围合并而成。
+         * @param tag        标签，同{@link #put(AbsSorter.AbsR, TAG, boolean)}的第二个参数。
+         * @param completion 执行完成后的回调，无论成功还是失败。
+         */
+        protected abstract void execAsync(Range<D> range, TAG tag, Completion<V> completion);
+
+        /**
+         * 从执行结果中切出一部分。默认不切分，即把整个结果分发给每个等待其中某部分的submit.
+         *
+         * @param result 范围<code>range</code>的执行结果。
+         * @param range  执行的范围。
+         * @param part   需要的部分，包含于<code>range</code>.
+         */
+        protected V slice(V result, Range<D> range, Range<D> part) {
+            return result;
+        }
+
+        /**
+         * 合并分几次执行的各部分的结果（仅一部分时不会调用）。
+         *
+         * @param range   submit的范围。
+         * @param parts   按从小到大的顺序，合起来正好是<code>range</code>.
+         * @param results 与<code>parts</code>一一对应，是{@link #slice(Object, Range, Range)}的结果。
+         */
+        protected abstract V join(Range<D> range, List<Range<D>> parts, List<V> results);
     }
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一个分类中{@link AbsThrottle#submit(AbsSorter.AbsR, Object, boolean) submit}的范围尚未完成的结果。
+ * <p>
+ * 这里只划分结果和决定以什么结束，{@link CompletableFuture}都放进<code>completions</code>, 由所属的分类在释放锁之后
+ * 再完成，以免在锁内执行调用方的代码（切分、合并以及各future的回调）。
+ * <p>
+ * 非线程安全，由所属的分类同步。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+final class Waiters<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
+    private final List<Waiter<D, R>> waiters = new LinkedList<>();
+    private final AbsThrottle.AbsExecutor<D, R, ?> executor;
+    private final Queue<Runnable> completions;
+
+    Waiters(AbsThrottle.AbsExecutor<D, R, ?> executor, Queue<Runnable> completions) {
+        this.executor = executor;
+        this.completions = completions;
+    }
+
+    /**
+     * @param remaining 空的分拣器，用于记录尚未完成的部分。
+     */
+    CompletableFuture<Object> add(R range, boolean promised, AbsSorter<D, R> remaining) {
+        final Waiter<D, R> w = new Waiter<>(range, promised, remaining);
+        waiters.add(w);
+        return w.future;
+    }
+
+    boolean isEmpty() {
+        return waiters.isEmpty();
+    }
+
+    /**
+     * 是否有尚未完成的与<code>range</code>有交集。
+     */
+    boolean waited(R range) {
+        for (Waiter<D, R> w : waiters) {
+            if (!w.future.isDone() && w.range.overlap(range)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 把执行完成的范围的结果切分给等待其中某部分的{@link Waiter}. 这里只划分，切分与合并（调用方的代码）在释放锁之后的
+     * {@link #settle(Waiter, AbsSorter.AbsR, Object, List) 回调}中进行。
+     */
+    void resolve(R range, Object result) {
+        if (waiters.isEmpty()) return;
+        List<R> parts = null;
+        for (Iterator<Waiter<D, R>> it = waiters.iterator(); it.hasNext(); ) {
+            final Waiter<D, R> w = it.next();
+            if (w.future.isDone()) {
+                it.remove();
+                continue;
+            }
+            if (!w.range.overlap(range)) continue;
+            if (parts == null) parts = new ArrayList<>(2);
+            w.remaining.intersect(range, parts);
+            if (parts.isEmpty()) continue;
+            for (R part : parts) w.remaining.drop(part);
+            synchronized (w) {
+                w.pending++;
+                if (!w.remaining.hasMore()) {
+                    w.whole = true;
+                    it.remove();
+                }
+            }
+            settle(w, range, result, parts);
+            parts = null;
+        }
+    }
+
+    private void settle(final Waiter<D, R> w, final R range, final Object result, final List<R> parts) {
+        completions.offer(new Runnable() {
+            @Override
+            public void run() {
+                if (w.future.isDone()) return;
+                final List<R> ranges;
+                final List<Object> results;
+                try {
+                    final List<Object> slices = new ArrayList<>(parts.size());
+                    for (R part : parts) slices.add(executor.slice$(result, range, part));
+                    synchronized (w) {
+                        for (int i = 0; i < parts.size(); i++) w.results.put(parts.get(i), slices.get(i));
+                        if (--w.pending > 0 || !w.whole) return; // 还有其它部分
+                        ranges = new ArrayList<>(w.results.keySet());
+                        results = new ArrayList<>(w.results.values());
+                    }
+                    w.future.complete(executor.join$(w.range, ranges, results));
+                } catch (Exception e) {
+                    w.future.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 尚未完成的部分与<code>range</code>有交集的{@link Waiter}都以异常<code>e</code>结束。
+     *
+     * @param withPromised 是否包括promised的。
+     */
+    void reject(R range, boolean withPromised, Throwable e) {
+        if (waiters.isEmpty()) return;
+        for (Iterator<Waiter<D, R>> it = waiters.iterator(); it.hasNext(); ) {
+            final Waiter<D, R> w = it.next();
+            if (w.future.isDone()) it.remove();
+            else if ((withPromised || !w.promised) && w.range.overlap(range)
+                    && w.remaining.overlap(range.from(), range.to())) {
+                it.remove();
+                reject(w.future, e);
+            }
+        }
+    }
+
+    /**
+     * 全部以异常<code>e</code>结束。
+     */
+    void rejectAll(Throwable e) {
+        for (Waiter<D, R> w : waiters) {
+            reject(w.future, e);
+        }
+        waiters.clear();
+    }
+
+    private void reject(final CompletableFuture<Object> future, final Throwable e) {
+        completions.offer(new Runnable() {
+            @Override
+            public void run() {
+                future.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * 一个submit的范围的结果：<code>remaining</code>为尚未完成的部分，<code>results</code>为已完成的各部分（按从小到大的顺序）的结果。
+     */
+    private static final class Waiter<D extends Discrete<D>, R extends AbsSorter.AbsR<D>> {
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final R range;
+        final boolean promised;
+        final AbsSorter<D, R> remaining;
+        final TreeMap<R, Object> results = new TreeMap<>(new Comparator<R>() {
+            @Override
+            public int compare(R left, R right) {
+                return Integer.compare(left.from().delta(right.from()), 0);
+            }
+        });
+        /**
+         * 已划分而尚未切分完的部分的批数，以及是否已全部划分。与<code>results</code>一样由本对象同步。
+         */
+        int pending;
+        boolean whole;
+
+        Waiter(R range, boolean promised, AbsSorter<D, R> remaining) {
+            this.range = range;
+            this.promised = promised;
+            this.remaining = remaining;
+            remaining.put(range);
+        }
+    }
+}
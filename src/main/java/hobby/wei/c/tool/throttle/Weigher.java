@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+/**
+ * 各{@link TAG 标记}分类的权重。见{@link AbsThrottle#setWeigher(Weigher)}.
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public interface Weigher<TAG> {
+    /**
+     * @param tag 标签，可能为null.
+     * @return 每一轮调度中该分类可连续获得的{@link AbsThrottle push}机会数，小于1按1计。
+     */
+    int weight(TAG tag);
+}
@@ -101,6 +101,16 @@ public class ThrottleTest {
             return String.valueOf(n);
         }
 
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IntD && ((IntD) o).n == n;
+        }
+
+        @Override
+        public int hashCode() {
+            return n;
+        }
+
         @Override
         public String toString() {
             return unique();
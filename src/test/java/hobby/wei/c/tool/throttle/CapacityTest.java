@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link AbsThrottle#setCapacity(int, int, Overflow) 等待队列容量}.
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class CapacityTest {
+    private volatile boolean open;
+    private final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    private final Map<Integer, Runnable> onDones = new ConcurrentHashMap<>();
+
+    private final ThrottleListener<String> listener = new ThrottleListener.Adapter<String>() {
+        @Override
+        public void onOverflow(String tag, boolean dropped) {
+            events.add("overflow:" + tag + ":" + dropped);
+        }
+    };
+
+    /**
+     * 名额由{@link #open}控制。注册时留的坑会让第一个输入直接派发，因此先派发一个<code>-10</code>占住它，
+     * 之后关闭时的输入都只能排队。
+     */
+    private ThrottleInt<String> make() {
+        final Counter counter = new Counter(10) {
+            @Override
+            boolean acquire() {
+                return open && super.acquire();
+            }
+        };
+        final ThrottleInt<String> throttle = new ThrottleInt<>(counter, 1, true, new ThrottleInt.Executor<String>() {
+            @Override
+            protected void execAsync(int from, int to, String tag, Runnable onDone) {
+                log.add("exec" + from);
+                onDones.put(from, onDone);
+            }
+
+            @Override
+            protected void cancel(int from, int to, String tag) {
+                log.add("cancel" + from);
+            }
+        });
+        throttle.setListener(listener);
+        throttle.put(-10, "x", false);
+        return throttle;
+    }
+
+    private void done(int from) {
+        onDones.remove(from).run();
+    }
+
+    @Test
+    public void reject() {
+        final ThrottleInt<String> throttle = make();
+        throttle.setCapacity(3, 0, Overflow.REJECT);
+        for (int i = 0; i < 3; i++) assertTrue(throttle.put(i * 10, "a", false));
+        assertFalse(throttle.put(30, "a", false));
+        assertFalse(throttle.put(40, "a", false));
+        assertTrue("其它 tag 不受单 tag 容量影响", throttle.put(50, "b", false));
+        assertEquals("[overflow:a:false, overflow:a:false]", events.toString());
+        throttle.destroy(true);
+    }
+
+    @Test
+    public void dropOldest() {
+        final ThrottleInt<String> throttle = make();
+        throttle.setCapacity(3, 0, Overflow.DROP_OLDEST);
+        throttle.put(0, "a", false);
+        throttle.put(10, "a", true);
+        throttle.put(20, "a", false);
+        assertTrue(throttle.put(30, "a", false));
+        assertTrue(throttle.put(40, "a", false));
+        assertEquals("[overflow:a:true, overflow:a:true]", events.toString());
+        open = true;
+        done(-10);
+        assertTrue("promised 的 10 不会被丢弃", log.contains("exec10"));
+        assertTrue(log.contains("exec30"));
+        assertTrue(log.contains("exec40"));
+        assertFalse(log.contains("exec0"));
+        assertFalse(log.contains("exec20"));
+        throttle.destroy(true);
+    }
+
+    @Test
+    public void blockTimeout() {
+        final ThrottleInt<String> throttle = make();
+        throttle.setCapacity(0, 2, Overflow.BLOCK, 100, TimeUnit.MILLISECONDS);
+        throttle.put(0, "a", false);
+        throttle.put(10, "b", false);
+        final long start = System.nanoTime();
+        assertFalse(throttle.put(20, "b", false));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertEquals("[overflow:b:false]", events.toString());
+        throttle.destroy(true);
+    }
+
+    @Test
+    public void blockUntilRoom() throws InterruptedException {
+        final ThrottleInt<String> throttle = make();
+        throttle.setCapacity(0, 2, Overflow.BLOCK);
+        throttle.put(10, "a", false);
+        throttle.put(20, "b", false);
+        final boolean[] accepted = new boolean[1];
+        final Thread producer = new Thread() {
+            @Override
+            public void run() {
+                accepted[0] = throttle.put(30, "b", false);
+            }
+        };
+        producer.start();
+        producer.join(50);
+        assertTrue(producer.isAlive());
+        open = true;
+        done(-10);
+        producer.join(1000);
+        assertFalse(producer.isAlive());
+        assertTrue(accepted[0]);
+        throttle.destroy(true);
+    }
+
+    @Test
+    public void destroyWakesBlocked() throws InterruptedException {
+        final ThrottleInt<String> throttle = make();
+        throttle.setCapacity(1, 0, Overflow.BLOCK);
+        throttle.put(0, null, false);
+        final Thread producer = new Thread() {
+            @Override
+            public void run() {
+                throttle.put(10, null, false);
+            }
+        };
+        producer.start();
+        producer.join(50);
+        assertTrue(producer.isAlive());
+        throttle.destroy(false);
+        producer.join(1000);
+        assertFalse(producer.isAlive());
+    }
+
+    /**
+     * 并发输入也不能超过容量：先占位再入队。
+     */
+    @Test
+    public void concurrentPutsNeverExceedCap() throws InterruptedException {
+        final int cap = 16, threads = 8, each = 50;
+        for (int round = 0; round < 20; round++) {
+            final ThrottleInt<String> throttle = make();
+            throttle.setCapacity(0, cap, Overflow.REJECT);
+            final AtomicInteger accepted = new AtomicInteger();
+            final CountDownLatch start = new CountDownLatch(1), end = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                final int base = t * each * 10;
+                new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int i = 0; i < each; i++) {
+                                if (throttle.put(base + i * 10, "t" + (i % 3), false)) accepted.incrementAndGet();
+                            }
+                        } catch (InterruptedException ignored) {
+                        } finally {
+                            end.countDown();
+                        }
+                    }
+                }.start();
+            }
+            start.countDown();
+            assertTrue(end.await(10, TimeUnit.SECONDS));
+            assertEquals(cap, accepted.get());
+            throttle.destroy(true);
+        }
+    }
+}
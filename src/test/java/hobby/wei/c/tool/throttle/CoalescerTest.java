@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link Coalescer}中一遍扫描的实现与逐个处理的实现在同一随机输入下的结果应完全一致。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class CoalescerTest {
+    private final Random random = new Random(7);
+
+    private Range<IntD> range(int bound, int maxLen) {
+        final int from = random.nextInt(bound);
+        return new Range<>(IntD.of(from), IntD.of(from + random.nextInt(maxLen)));
+    }
+
+    private Stack<Range<IntD>> stack(int size, int bound, int maxLen) {
+        final Stack<Range<IntD>> stack = new Stack<>();
+        for (int i = 0; i < size; i++) stack.push(range(bound, maxLen));
+        return stack;
+    }
+
+    @Test
+    public void drainEqualsTakeMerge() {
+        for (int round = 0; round < 2000; round++) {
+            final int limit = 1 + random.nextInt(12);
+            final boolean minFirst = random.nextBoolean();
+            final Stack<Range<IntD>> stack = stack(random.nextInt(30), 80, 1 + random.nextInt(15));
+            final String at = "round " + round + ", limit " + limit + ", minFirst " + minFirst + ", " + stack;
+            final Stack<Range<IntD>> copy = new Stack<>();
+            copy.addAll(stack);
+            final Coalescer<IntD, Range<IntD>> expected = new Coalescer<>(new SorterR<IntD>(), limit, minFirst);
+            final List<Range<IntD>> merged = new ArrayList<>();
+            Range<IntD> r;
+            while ((r = expected.take(copy)) != null) merged.add(expected.merge(copy, r));
+            final Coalescer<IntD, Range<IntD>> actual = new Coalescer<>(new SorterR<IntD>(), limit, minFirst);
+            assertEquals(at, merged.toString(), actual.drain(stack).toString());
+            assertEquals(at, expected.absorbed, actual.absorbed);
+            assertEquals(at, 0, stack.size());
+        }
+    }
+
+    /**
+     * 大量相同的范围加一个很长的范围：每个元素只被处理常数次，比较次数随规模近似线性增长（而不是平方）。
+     */
+    @Test
+    public void drainScalesWithDuplicatesAndOneLongRange() {
+        final long small = drainDeltas(1000), large = drainDeltas(4000);
+        assertTrue(small + " -> " + large, large < small * 8);
+    }
+
+    private static long drainDeltas(int duplicates) {
+        final Stack<Range<Counted>> stack = new Stack<>();
+        stack.push(new Range<>(new Counted(0), new Counted(999)));
+        for (int i = 0; i < duplicates; i++) stack.push(new Range<>(new Counted(5), new Counted(5)));
+        final Coalescer<Counted, Range<Counted>> coalescer = new Coalescer<>(new SorterR<Counted>(), 10, true);
+        Counted.deltas = 0;
+        final List<Range<Counted>> merged = coalescer.drain(stack);
+        assertEquals(duplicates - 1, coalescer.absorbed);
+        assertEquals(100, merged.size()); // 相同的都被第一个吸收了，再与长范围合并并截断
+        assertEquals("[[0, 9], [10, 19]]", merged.subList(0, 2).toString());
+        return Counted.deltas;
+    }
+
+    /**
+     * 记下{@link #delta(Counted)}的调用次数。
+     */
+    private static final class Counted implements Discrete<Counted> {
+        static long deltas;
+        final int n;
+
+        Counted(int n) {
+            this.n = n;
+        }
+
+        @Override
+        public int delta(Counted c) {
+            deltas++;
+            return n - c.n;
+        }
+
+        @Override
+        public Counted offset(int delta) {
+            return new Counted(n + delta);
+        }
+
+        @Override
+        public String unique() {
+            return String.valueOf(n);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Counted && ((Counted) o).n == n;
+        }
+
+        @Override
+        public int hashCode() {
+            return n;
+        }
+
+        @Override
+        public String toString() {
+            return unique();
+        }
+    }
+
+    @Test
+    public void pruneEqualsRepeatedDrop() {
+        for (int round = 0; round < 2000; round++) {
+            final boolean minFirst = random.nextBoolean();
+            final Stack<Range<IntD>> stack = stack(random.nextInt(20), 100, 1 + random.nextInt(20));
+            final SorterR<IntD> index = new SorterR<>();
+            for (int i = random.nextInt(6); i > 0; i--) index.put(range(100, 1 + random.nextInt(15)));
+            final String at = "round " + round + ", minFirst " + minFirst + ", " + stack + " - " + index.get(Integer.MAX_VALUE, true);
+            final Coalescer<IntD, Range<IntD>> coalescer = new Coalescer<>(new SorterR<IntD>(), 100, minFirst);
+            final List<Range<IntD>> expected = new ArrayList<>(stack);
+            for (Range<IntD> r : index.get(Integer.MAX_VALUE, true)) coalescer.drop(expected, r);
+            final List<Range<IntD>> overlap = new ArrayList<>();
+            for (Range<IntD> r : stack) index.intersect(r, overlap);
+            final List<Range<IntD>> removed = new ArrayList<>();
+            coalescer.prune(stack, index, removed);
+            assertEquals(at, expected.toString(), stack.toString());
+            assertEquals(at, union(overlap), union(removed)); // 被减去的部分即原栈与索引的交集
+        }
+    }
+
+    private static String union(List<Range<IntD>> ranges) {
+        final SorterR<IntD> sorter = new SorterR<>();
+        for (Range<IntD> r : ranges) sorter.put(r);
+        return sorter.get(Integer.MAX_VALUE, true).toString();
+    }
+
+    @Test
+    public void subtractEqualsDrop() {
+        for (int round = 0; round < 2000; round++) {
+            final SorterR<IntD> index = new SorterR<>();
+            for (int i = random.nextInt(6); i > 0; i--) index.put(range(60, 1 + random.nextInt(10)));
+            final Range<IntD> r = range(60, 1 + random.nextInt(30));
+            final List<Range<IntD>> pieces = new ArrayList<>();
+            final boolean overlap = index.subtract(r, pieces);
+            final SorterR<IntD> expected = new SorterR<>();
+            expected.put(r);
+            for (Range<IntD> d : index.get(Integer.MAX_VALUE, true)) expected.drop(d);
+            final String at = "round " + round + ", " + r + " - " + index.get(Integer.MAX_VALUE, true);
+            assertEquals(at, index.overlap(r.from, r.to), overlap);
+            if (overlap) assertEquals(at, expected.get(Integer.MAX_VALUE, true).toString(), pieces.toString());
+            else assertEquals(at, 0, pieces.size());
+        }
+    }
+
+    /**
+     * 正在执行的范围之间可能有交集，删除其中一个之后，索引应与由其余的重建的相同。
+     */
+    @Test
+    public void reindexEqualsRebuild() {
+        for (int round = 0; round < 2000; round++) {
+            final List<Range<IntD>> executing = new ArrayList<>();
+            final SorterR<IntD> index = new SorterR<>();
+            for (int i = 1 + random.nextInt(8); i > 0; i--) {
+                final Range<IntD> r = range(50, 1 + random.nextInt(10));
+                executing.add(r);
+                index.put(r);
+            }
+            while (!executing.isEmpty()) {
+                final Range<IntD> done = executing.remove(random.nextInt(executing.size()));
+                index.drop(done);
+                Coalescer.reindex(index, executing, done);
+                assertEquals("round " + round, union(executing), index.get(Integer.MAX_VALUE, true).toString());
+            }
+        }
+    }
+}
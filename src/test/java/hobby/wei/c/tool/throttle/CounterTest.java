@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link Counter}的{@link Counter#setRate(double, int) 限速}(GCRA)和{@link Counter#setAdaptive(int, double) 自适应}
+ * (AIMD)，与按定义逐步计算的结果对照。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class CounterTest {
+    private final List<Long> dispatched = Collections.synchronizedList(new ArrayList<Long>());
+
+    private ThrottleInt<String> throttle(Counter counter, final CountDownLatch latch) {
+        return new ThrottleInt<>(counter, 1, true, new ThrottleInt.Executor<String>() {
+            @Override
+            protected void execAsync(int from, int to, String tag, Runnable onDone) {
+                dispatched.add(System.nanoTime());
+                if (latch != null) latch.countDown();
+            }
+
+            @Override
+            protected void cancel(int from, int to, String tag) {
+            }
+        });
+    }
+
+    /**
+     * GCRA等同于容量为<code>burst</code>的令牌桶：闲置之后可以连续领<code>burst</code>个，之后每个间隔领一个。
+     */
+    @Test
+    public void gcraBurstThenInterval() {
+        final Counter counter = new Counter(100);
+        counter.setRate(1, 3); // 间隔1秒，测试期间不会有新的令牌
+        final ThrottleInt<String> throttle = throttle(counter, null);
+        final int[] results = new int[5];
+        for (int i = 0; i < results.length; i++) results[i] = counter.hold$(throttle);
+        assertEquals("[0, 0, 0, 2, 2]", Arrays.toString(results));
+        assertEquals(3, counter.count());
+        throttle.destroy(false);
+    }
+
+    /**
+     * 令牌不足时不是忙等或丢弃，而是到时间之后再push; 派发的间隔不小于速率决定的间隔。
+     */
+    @Test(timeout = 10000)
+    public void rateDefersAndSpaces() throws InterruptedException {
+        final Counter counter = new Counter(100);
+        counter.setRate(20, 2); // 间隔50毫秒
+        final CountDownLatch latch = new CountDownLatch(6);
+        final ThrottleInt<String> throttle = throttle(counter, latch);
+        for (int i = 0; i < 6; i++) throttle.put(i * 10, "t", false);
+        assertEquals(2, dispatched.size());
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        final long spread = dispatched.get(5) - dispatched.get(0);
+        assertTrue("spread " + spread, spread >= TimeUnit.MILLISECONDS.toNanos(4 * 50 - 20));
+        throttle.destroy(false);
+    }
+
+    /**
+     * 调快速率之后，已透支的部分按新的间隔折算，推迟的push随之提前。
+     */
+    @Test(timeout = 10000)
+    public void rateAdjustableAtRuntime() throws InterruptedException {
+        final Counter counter = new Counter(100);
+        counter.setRate(0.1, 1); // 间隔10秒
+        final CountDownLatch latch = new CountDownLatch(2);
+        final ThrottleInt<String> throttle = throttle(counter, latch);
+        throttle.put(0, "t", false);
+        throttle.put(10, "t", false);
+        assertEquals(1, dispatched.size());
+        counter.setRate(1000, 1);
+        throttle.put(20, "t", false); // 触发push; 或由原先安排的推迟push
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        throttle.destroy(false);
+    }
+
+    /**
+     * 与按AIMD定义逐步计算的上限对照：用满一半以上时每满一个上限数的正常样本加1; 失败时乘以0.9, 同一拨只减一次，
+     * 不低于下限。
+     */
+    @Test
+    public void aimdMatchesModel() {
+        final Counter counter = new Counter(10);
+        counter.setAdaptive(2, 1000); // 容忍度很大，只有失败才算过载
+        final ThrottleInt<String> throttle = throttle(counter, null);
+        int model = 10;
+        for (int i = 0; i < 8; i++) {
+            counter.sample(throttle, System.nanoTime(), false);
+            model = Math.max(2, (int) (model * 0.9));
+            assertEquals(model, counter.limit());
+        }
+        assertEquals(2, counter.limit());
+        // 之前发起的（同一拨）不再减。
+        counter.sample(throttle, System.nanoTime() - TimeUnit.SECONDS.toNanos(1), false);
+        assertEquals(2, counter.limit());
+        // 没用满一半，不加。
+        for (int i = 0; i < 10; i++) counter.sample(throttle, System.nanoTime(), true);
+        assertEquals(2, counter.limit());
+        // 用满之后，每满一个上限数的样本加1.
+        while (counter.hold(throttle)) ;
+        for (int step = 0; step < 3; step++) {
+            final int l = counter.limit();
+            assertTrue(counter.count() * 2 >= l);
+            for (int i = 0; i < l - 1; i++) counter.sample(throttle, System.nanoTime(), true);
+            assertEquals(l, counter.limit());
+            counter.sample(throttle, System.nanoTime(), true);
+            assertEquals(l + 1, counter.limit());
+        }
+        throttle.destroy(false);
+    }
+
+    /**
+     * 延迟超过基准的容忍倍数视为过载。
+     */
+    @Test
+    public void latencyOverload() throws InterruptedException {
+        final Counter counter = new Counter(10);
+        counter.setAdaptive(2, 2);
+        final ThrottleInt<String> throttle = throttle(counter, null);
+        counter.sample(throttle, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(1), true); // 基准1毫秒
+        assertEquals(10, counter.limit());
+        Thread.sleep(60);
+        counter.sample(throttle, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(50), true);
+        assertEquals(9, counter.limit());
+        throttle.destroy(false);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link Deadlines}及{@link AbsThrottle#setExpiry(long, TimeUnit) 等待的期限}。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class DeadlinesTest {
+    private static String expire(Deadlines<IntD, Range<IntD>> deadlines, long now) {
+        final SorterR<IntD> index = new SorterR<>();
+        deadlines.expire(now, index);
+        final List<Range<IntD>> out = new ArrayList<>();
+        index.intersect(new Range<>(IntD.of(-1000), IntD.of(1000)), out);
+        return out.toString();
+    }
+
+    private static Range<IntD> range(int from, int to) {
+        return new Range<>(IntD.of(from), IntD.of(to));
+    }
+
+    @Test
+    public void laterInputShieldsOverlap() {
+        final Deadlines<IntD, Range<IntD>> deadlines = new Deadlines<>();
+        deadlines.put(range(0, 9), 1);
+        deadlines.put(range(5, 14), 2);
+        assertFalse(deadlines.due(0));
+        assertTrue(deadlines.due(1));
+        assertEquals("[[0, 4]]", expire(deadlines, 1));
+        assertEquals("[[5, 14]]", expire(deadlines, 2));
+        assertTrue(deadlines.isEmpty());
+    }
+
+    /**
+     * 从中间切开的，两边的余段都跟随原输入过期；被整个覆盖的不再过期。
+     */
+    @Test
+    public void splitRestExpiresWithOriginal() {
+        final Deadlines<IntD, Range<IntD>> deadlines = new Deadlines<>();
+        deadlines.put(range(0, 29), 1);
+        deadlines.put(range(10, 14), 2);
+        deadlines.put(range(20, 22), 3);
+        deadlines.put(range(40, 49), 4);
+        deadlines.put(range(40, 49), 5);
+        assertEquals("[[0, 9], [15, 19], [23, 29]]", expire(deadlines, 1));
+        assertEquals("[[10, 14]]", expire(deadlines, 2));
+        assertEquals("[[20, 22]]", expire(deadlines, 3));
+        assertEquals("[]", expire(deadlines, 4));
+        assertEquals("[[40, 49]]", expire(deadlines, 5));
+    }
+
+    @Test
+    public void waitingInputExpires() throws InterruptedException {
+        final List<Range<IntD>> ranges = new ArrayList<>(), expired = new ArrayList<>();
+        final List<Runnable> onDones = new ArrayList<>();
+        final ThrottleR<IntD, String> throttle = new ThrottleR<>(new Counter(1), 10, true, new ThrottleR.Executor<IntD, String>() {
+            @Override
+            protected void execAsync(Range<IntD> range, String tag, Runnable onDone) {
+                ranges.add(range);
+                onDones.add(onDone);
+            }
+
+            @Override
+            protected void cancel(Range<IntD> range, String tag) {
+            }
+
+            @Override
+            protected void expired(Range<IntD> range, String tag) {
+                expired.add(range);
+            }
+        });
+        throttle.setExpiry(50, TimeUnit.MILLISECONDS);
+        throttle.put(range(0, 9), "t", false);
+        throttle.put(range(20, 29), "t", false); // 名额已满，等待
+        Thread.sleep(100);
+        throttle.put(range(25, 34), "t", false); // 较晚输入的相交部分重新计时
+        onDones.get(0).run();
+        assertEquals("[[20, 24]]", expired.toString());
+        assertEquals("[[0, 9], [25, 34]]", ranges.toString());
+        throttle.destroy(false);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link AbsThrottle#setDebounce(long, TimeUnit, int) 合并窗口}。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class DebounceTest {
+    private final List<Range<Num>> ranges = new ArrayList<>();
+    private final List<Runnable> onDones = new ArrayList<>();
+    private final ThrottleR.Executor<Num, String> executor = new ThrottleR.Executor<Num, String>() {
+        @Override
+        protected void execAsync(Range<Num> range, String tag, Runnable onDone) {
+            synchronized (ranges) {
+                ranges.add(range);
+                onDones.add(onDone);
+            }
+        }
+
+        @Override
+        protected void cancel(Range<Num> range, String tag) {
+        }
+    };
+
+    private String ranges() {
+        synchronized (ranges) {
+            return ranges.toString();
+        }
+    }
+
+    private static Range<Num> page(int i) {
+        return Num.range(i * 10, i * 10 + 9);
+    }
+
+    @Test
+    public void closeByTime() throws InterruptedException {
+        final ThrottleR<Num, String> throttle = new ThrottleR<>(new Counter(4), 10, true, executor);
+        throttle.setDebounce(50, TimeUnit.MILLISECONDS, 0);
+        throttle.put(page(0), "t", false);
+        throttle.put(page(2), "t", false);
+        assertEquals("[]", ranges());
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (ranges().equals("[]") && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals("[[20, 29], [0, 9]]", ranges());
+        throttle.destroy(false);
+    }
+
+    @Test
+    public void closeEarlyOnMaxRanges() {
+        final ThrottleR<Num, String> throttle = new ThrottleR<>(new Counter(4), 10, true, executor);
+        throttle.setDebounce(1, TimeUnit.HOURS, 3);
+        throttle.put(page(0), "t", false);
+        throttle.put(page(2), "t", false);
+        assertEquals("[]", ranges());
+        throttle.put(page(4), "t", false);
+        assertEquals("[[40, 49], [20, 29], [0, 9]]", ranges());
+        throttle.destroy(false);
+    }
+
+    /**
+     * 快速翻过的页面在窗口内就被挤出局，不会发起。
+     */
+    @Test
+    public void pagesPassedOverNeverExecute() {
+        final ThrottleR<Num, String> throttle = new ThrottleR<>(new Counter(1), 10, true, executor);
+        throttle.setDebounce(1, TimeUnit.HOURS, 5);
+        for (int i = 0; i < 5; i++) throttle.put(page(i), "t", false);
+        assertEquals("[[40, 49]]", ranges());
+        onDones.get(0).run();
+        assertEquals("[[40, 49]]", ranges());
+        throttle.destroy(false);
+    }
+
+    /**
+     * 窗口只拦下输入触发的push, 任务完成时照常派发。
+     */
+    @Test
+    public void completionNotSuppressed() {
+        final ThrottleR<Num, String> throttle = new ThrottleR<>(new Counter(1), 10, true, executor);
+        throttle.put(page(0), "t", false);
+        throttle.setDebounce(1, TimeUnit.HOURS, 0);
+        throttle.put(page(2), "t", false);
+        throttle.put(page(4), "u", false);
+        assertEquals("[[0, 9]]", ranges());
+        onDones.get(0).run();
+        assertEquals(2, onDones.size());
+        onDones.get(1).run();
+        assertEquals(3, onDones.size());
+        throttle.destroy(false);
+    }
+}
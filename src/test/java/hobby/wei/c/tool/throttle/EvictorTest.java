@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link AbsThrottle#setEvictor(Evictor) 挤出策略}。用调低了{@link Counter#limit() 当前上限}的计数器模拟自适应上限在两次
+ * 派发之间被调低（已领到的名额不变，满载队列却变小了）。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class EvictorTest {
+    private final List<Range<Num>> ranges = new ArrayList<>();
+    private final List<Range<Num>> cancelled = new ArrayList<>();
+    private final ThrottleR.Executor<Num, String> executor = new ThrottleR.Executor<Num, String>() {
+        @Override
+        protected void execAsync(Range<Num> range, String tag, Runnable onDone) {
+            ranges.add(range);
+        }
+
+        @Override
+        protected void cancel(Range<Num> range, String tag) {
+            cancelled.add(range);
+        }
+    };
+
+    private ThrottleR<Num, String> make() {
+        final Counter counter = new Counter(4) {
+            @Override
+            public int limit() {
+                return 2;
+            }
+        };
+        return new ThrottleR<>(counter, 10, true, executor);
+    }
+
+    @Test
+    public void firstDispatchedFirstByDefault() {
+        final ThrottleR<Num, String> throttle = make();
+        throttle.put(Num.range(0, 9), "t", false);
+        throttle.put(Num.range(20, 21), "t", false);
+        throttle.put(Num.range(40, 49), "t", false);
+        assertEquals("[[0, 9], [20, 21], [40, 49]]", ranges.toString());
+        assertEquals("[[0, 9]]", cancelled.toString());
+        throttle.destroy(false);
+    }
+
+    @Test
+    public void cheapestFirst() {
+        final ThrottleR<Num, String> throttle = make();
+        throttle.setEvictor(new Evictor<String>() {
+            @Override
+            public long cost(String tag, int size, float progress, long elapsedNanos) {
+                return size;
+            }
+        });
+        throttle.put(Num.range(0, 9), "t", false);
+        throttle.put(Num.range(20, 21), "t", false);
+        throttle.put(Num.range(40, 49), "t", false);
+        assertEquals("[[0, 9], [20, 21], [40, 49]]", ranges.toString());
+        assertEquals("[[20, 21]]", cancelled.toString());
+        throttle.destroy(false);
+    }
+
+    /**
+     * 不可挤出的让它执行完；且只在当轮有效，进度变了之后的下一轮照常挤出。
+     */
+    @Test
+    public void spareSurvivesOverflow() {
+        final ThrottleR<Num, String> throttle = make();
+        throttle.setEvictor(new Evictor.Sunk<String>(0.5f));
+        throttle.put(Num.range(0, 9), "t", false);
+        throttle.put(Num.range(20, 29), "t", false);
+        throttle.progress(Num.range(0, 9), "t", 0.8f);
+        throttle.progress(Num.range(20, 29), "t", 0.6f);
+        throttle.put(Num.range(40, 49), "t", false);
+        assertEquals("[[0, 9], [20, 29], [40, 49]]", ranges.toString());
+        assertEquals("[]", cancelled.toString());
+        throttle.progress(Num.range(20, 29), "t", 0.2f);
+        throttle.put(Num.range(60, 69), "t", false);
+        assertEquals("[[0, 9], [20, 29], [40, 49], [60, 69]]", ranges.toString());
+        assertEquals("[[40, 49], [20, 29]]", cancelled.toString()); // 已执行时间短的先挤出
+        throttle.destroy(false);
+    }
+}
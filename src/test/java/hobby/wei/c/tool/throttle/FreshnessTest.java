@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 新鲜期：只记录成功完成的范围，过期之后释放闲置的分类对象。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class FreshnessTest {
+    private final List<String> runs = new ArrayList<>();
+    private final ThrottleInt.Executor<String> inline = new ThrottleInt.Executor<String>() {
+        @Override
+        protected void execAsync(int from, int to, String tag, Runnable onDone) {
+            synchronized (runs) {
+                runs.add(from + "~" + to);
+            }
+            onDone.run();
+        }
+
+        @Override
+        protected void cancel(int from, int to, String tag) {
+        }
+    };
+
+    @Test
+    public void freshRangesAreSubtracted() {
+        final ThrottleInt<String> throttle = new ThrottleInt<>(new Counter(4), 100, true, inline);
+        throttle.setFreshness(1, TimeUnit.MINUTES);
+        throttle.put(10, 19, "t", false);
+        throttle.put(5, 24, "t", false);
+        assertEquals("[10~19, 5~9, 20~24]", runs.toString());
+        throttle.destroy(false);
+    }
+
+    /**
+     * 一次性的tag只剩新鲜期内的记录时，过期之后也要被释放。
+     */
+    @Test(timeout = 10000)
+    public void idleTagReleasedAfterExpiry() throws Exception {
+        final ThrottleInt<String> throttle = new ThrottleInt<>(new Counter(4), 100, true, inline);
+        throttle.setFreshness(100, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 10; i++) {
+            throttle.put(i, i, "once" + i, false);
+        }
+        assertTrue(throttle.holds("once9"));
+        while (throttle.holds("once0") || throttle.holds("once9")) Thread.sleep(20);
+        assertFalse(throttle.holds("once5"));
+        throttle.destroy(false);
+    }
+
+    /**
+     * 执行者在cancel时同步回调onDone, 被取消的也不能记入新鲜期或算作完成。
+     */
+    @Test(timeout = 10000)
+    public void syncCancelIsNotCompletion() throws Exception {
+        final BlockingQueue<Boolean> completes = new LinkedBlockingQueue<>();
+        final List<CompletableFuture<Object>> futures = new ArrayList<>();
+        final ThrottleInt<String> throttle = new ThrottleInt<>(new Counter(2), 10, true, new ThrottleInt.FutureExecutor<String>() {
+            @Override
+            protected CompletableFuture<?> supply(int from, int to, String tag) {
+                final CompletableFuture<Object> future = new CompletableFuture<>();
+                futures.add(future);
+                return future;
+            }
+        });
+        throttle.setFreshness(1, TimeUnit.MINUTES);
+        throttle.setListener(new ThrottleListener.Adapter<String>() {
+            @Override
+            public void onComplete(String tag, long execNanos, boolean success) {
+                completes.add(success);
+            }
+        });
+        throttle.put(1, 5, "t", false);
+        throttle.cancel(1, 5, "t", false);
+        assertTrue(futures.get(0).isCancelled());
+        assertTrue(completes.isEmpty());
+        throttle.put(1, 5, "t", false); // 没有记入新鲜期，会再次执行。
+        assertEquals(2, futures.size());
+        futures.get(1).complete(null);
+        assertEquals(Boolean.TRUE, completes.take());
+        throttle.destroy(false);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class HistogramTest {
+    @Test
+    public void bucketBounds() {
+        final ThrottleMetrics.Histogram h = new ThrottleMetrics.Histogram();
+        h.record(0);
+        h.record(1);
+        h.record(3);
+        h.record(4);
+        h.record(1L << 62);
+        h.record(Long.MAX_VALUE);
+        final long[] b = h.buckets();
+        assertEquals(1, b[0]);
+        assertEquals(1, b[1]);
+        assertEquals(1, b[2]);
+        assertEquals(1, b[3]);
+        assertEquals(0, b[62]);
+        assertEquals(2, b[63]);
+        assertEquals(3, h.quantile(.5));
+        assertEquals(Long.MAX_VALUE, h.quantile(1));
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link Journal}的回放与压缩：重启之后恢复的范围，应与按输入减去完成逐步计算的结果相同。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class JournalTest {
+    private static final Codec<String> TAGS = new Codec<String>() {
+        @Override
+        public void write(String value, DataOutput out) throws IOException {
+            out.writeUTF(value);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    private File file;
+    /**
+     * 各分类派发的范围，以及尚未完成的回调。
+     */
+    private final Map<String, List<String>> dispatched = new HashMap<>();
+    private final List<Object[]> running = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("throttle", ".journal");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    private ThrottleInt<String> open(int maxReqCount) throws IOException {
+        final ThrottleInt<String> throttle = new ThrottleInt<>(new Counter(maxReqCount), 1000, true, new ThrottleInt.Executor<String>() {
+            @Override
+            protected void execAsync(int from, int to, String tag, Runnable onDone) {
+                List<String> list = dispatched.get(tag);
+                if (list == null) dispatched.put(tag, list = new ArrayList<>());
+                list.add("[" + from + ", " + to + "]");
+                running.add(new Object[]{new Range<>(IntD.of(from), IntD.of(to)), tag, onDone});
+            }
+
+            @Override
+            protected void cancel(int from, int to, String tag) {
+            }
+        });
+        throttle.openJournal(file, TAGS, false);
+        return throttle;
+    }
+
+    /**
+     * 随机输入、完成，重启之后恢复的即各分类输入之和减去完成之和。
+     */
+    @Test
+    public void replayMatchesModel() throws IOException {
+        final Random random = new Random(3);
+        for (int round = 0; round < 50; round++) {
+            file.delete();
+            dispatched.clear();
+            running.clear();
+            final Map<String, SorterR<IntD>> model = new HashMap<>();
+            final ThrottleInt<String> throttle = open(3);
+            for (int step = 0; step < 60; step++) {
+                if (random.nextInt(3) > 0 || running.isEmpty()) {
+                    final String tag = random.nextBoolean() ? "a" : "b";
+                    final int from = random.nextInt(200), to = from + random.nextInt(12);
+                    SorterR<IntD> sorter = model.get(tag);
+                    if (sorter == null) model.put(tag, sorter = new SorterR<>());
+                    sorter.put(IntD.of(from), IntD.of(to));
+                    throttle.put(from, to, tag, true);
+                } else {
+                    final Object[] done = running.remove(random.nextInt(running.size()));
+                    @SuppressWarnings("unchecked") final Range<IntD> range = (Range<IntD>) done[0];
+                    final SorterR<IntD> sorter = model.get((String) done[1]);
+                    if (sorter != null) sorter.drop(range);
+                    ((Runnable) done[2]).run();
+                }
+            }
+            throttle.destroy(false);
+            dispatched.clear();
+            running.clear();
+            final ThrottleInt<String> reopened = open(1000);
+            for (String tag : new String[]{"a", "b"}) {
+                final SorterR<IntD> sorter = model.get(tag);
+                final List<String> expected = new ArrayList<>();
+                if (sorter != null) for (Range<IntD> r : sorter.get(Integer.MAX_VALUE, true)) expected.add(r.toString());
+                final List<String> actual = dispatched.containsKey(tag) ? dispatched.get(tag) : new ArrayList<String>();
+                Collections.sort(actual, BY_FROM);
+                assertEquals("round " + round + ", tag " + tag, expected, actual);
+            }
+            reopened.destroy(false);
+        }
+    }
+
+    private static final Comparator<String> BY_FROM = new Comparator<String>() {
+        @Override
+        public int compare(String left, String right) {
+            return Integer.compare(from(left), from(right));
+        }
+
+        private int from(String range) {
+            return Integer.parseInt(range.substring(1, range.indexOf(',')));
+        }
+    };
+
+    /**
+     * 压缩之后只剩尚未完成的输入：再次打开时恢复的相同，文件也不再变小。
+     */
+    @Test
+    public void compactionIsStable() throws IOException {
+        ThrottleInt<String> throttle = open(1);
+        throttle.put(1, 5, "a", true);
+        throttle.put(3, 8, "a", true);
+        throttle.put(20, 22, "a", true);
+        throttle.put(30, 30, "b", true);
+        ((Runnable) running.get(0)[2]).run(); // [1, 5]完成
+        throttle.destroy(false);
+        final long before = file.length();
+        dispatched.clear();
+        running.clear();
+        throttle = open(1000);
+        assertEquals("{a=[[6, 8], [20, 22]], b=[[30, 30]]}", sorted(dispatched).toString());
+        throttle.destroy(false);
+        final long compacted = file.length();
+        assertTrue(compacted < before);
+        dispatched.clear();
+        running.clear();
+        throttle = open(1000);
+        assertEquals("{a=[[6, 8], [20, 22]], b=[[30, 30]]}", sorted(dispatched).toString());
+        throttle.destroy(false);
+        assertEquals(compacted, file.length());
+    }
+
+    /**
+     * 崩溃时写了一半的记录被忽略。
+     */
+    @Test
+    public void tornTailIgnored() throws IOException {
+        ThrottleInt<String> throttle = open(1);
+        throttle.put(1, 5, "a", true);
+        throttle.put(10, 12, "a", true);
+        throttle.destroy(false);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[]{0, 0, 0, 40, 1, 2, 3});
+        }
+        dispatched.clear();
+        running.clear();
+        throttle = open(1000);
+        assertEquals("{a=[[1, 5], [10, 12]]}", sorted(dispatched).toString());
+        throttle.destroy(false);
+    }
+
+    private static Map<String, List<String>> sorted(Map<String, List<String>> map) {
+        final Map<String, List<String>> result = new TreeMap<>();
+        for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+            final List<String> list = new ArrayList<>(entry.getValue());
+            Collections.sort(list, BY_FROM);
+            result.put(entry.getKey(), list);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+/**
+ * 测试用的{@link Discrete}: 每次{@link #offset(int)}都生成新对象，同值的不同对象按值相等。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+final class Num implements Discrete<Num> {
+    final int n;
+
+    Num(int n) {
+        this.n = n;
+    }
+
+    static Range<Num> range(int from, int to) {
+        return new Range<>(new Num(from), new Num(to));
+    }
+
+    @Override
+    public int delta(Num num) {
+        return n - num.n;
+    }
+
+    @Override
+    public Num offset(int delta) {
+        return new Num(n + delta);
+    }
+
+    @Override
+    public String unique() {
+        return String.valueOf(n);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Num && ((Num) o).n == n;
+    }
+
+    @Override
+    public int hashCode() {
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return unique();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 预取与{@link Counter#setRate(double, int) 限速}.
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class PrefetchTest {
+    private final List<Range<Num>> ranges = new ArrayList<>();
+    private final List<Runnable> onDones = new ArrayList<>();
+    private final List<Range<Num>> cancelled = new ArrayList<>();
+    private final ThrottleR.Executor<Num, String> executor = new ThrottleR.Executor<Num, String>() {
+        @Override
+        protected void execAsync(Range<Num> range, String tag, Runnable onDone) {
+            ranges.add(range);
+            onDones.add(onDone);
+        }
+
+        @Override
+        protected void cancel(Range<Num> range, String tag) {
+            cancelled.add(range);
+        }
+    };
+
+    @Test
+    public void prefetchAdjacent() {
+        final ThrottleR<Num, String> throttle = new ThrottleR<>(new Counter(4), 10, true, executor);
+        throttle.setPrefetch(2);
+        throttle.put(Num.range(0, 9), "t", false);
+        assertEquals("[[0, 9], [10, 19], [20, 29]]", ranges.toString());
+        throttle.destroy(false);
+    }
+
+    /**
+     * 限速时不预取，以免占用发放许可。
+     */
+    @Test
+    public void noPrefetchWhileRated() {
+        final Counter counter = new Counter(4);
+        counter.setRate(1000, 10);
+        final ThrottleR<Num, String> throttle = new ThrottleR<>(counter, 10, true, executor);
+        throttle.setPrefetch(2);
+        throttle.put(Num.range(0, 9), "t", false);
+        assertEquals("[[0, 9]]", ranges.toString());
+        throttle.destroy(false);
+    }
+
+    /**
+     * 因限速而不是名额不足而没能派发时，取消预取让出名额也无济于事，不应取消。
+     */
+    @Test
+    public void rateDenialKeepsPrefetch() {
+        final Counter counter = new Counter(4);
+        final ThrottleR<Num, String> throttle = new ThrottleR<>(counter, 10, true, executor);
+        throttle.setPrefetch(1);
+        throttle.put(Num.range(0, 9), "t", false);
+        assertEquals("[[0, 9], [10, 19]]", ranges.toString());
+        onDones.get(0).run();
+        counter.setRate(1, 1); // 之后只有一个许可
+        throttle.put(Num.range(3, 4), "t", false);
+        throttle.put(Num.range(5, 6), "t", false); // 名额够，但没有许可
+        assertEquals("[[0, 9], [10, 19], [3, 4]]", ranges.toString());
+        assertEquals("[]", cancelled.toString());
+        counter.setRate(0, 0);
+        throttle.destroy(false);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 范围用作{@link Map}的键。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class RangeTest {
+    @Test
+    public void equalRangesHashAlike() {
+        final Range<Num> a = Num.range(3, 9), b = Num.range(3, 9);
+        assertTrue(a.equals(b));
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(Num.range(5, 5).hashCode(), Num.range(5, 5).hashCode());
+    }
+
+    @Test
+    public void lookupByNewRange() {
+        final Map<Range<Num>, String> map = new HashMap<>();
+        for (int i = 0; i < 100; i += 10) {
+            map.put(Num.range(i, i + 4), "r" + i);
+        }
+        for (int i = 0; i < 100; i += 10) {
+            assertEquals("r" + i, map.get(Num.range(i, i + 4)));
+        }
+        assertEquals(null, map.get(Num.range(0, 5)));
+    }
+}
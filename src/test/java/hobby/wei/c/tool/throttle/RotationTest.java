@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link Rotation}的差额轮转，即{@link AbsThrottle#setWeigher(Weigher)}.
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class RotationTest {
+    private final StringBuilder order = new StringBuilder();
+    /**
+     * 共享的名额，用完了push就不可以继续。
+     */
+    private int slots = Integer.MAX_VALUE;
+
+    private final class Member extends Rotation.Member {
+        final String name;
+        final int weight;
+        int pending;
+
+        Member(String name, int weight, int pending) {
+            this.name = name;
+            this.weight = weight;
+            this.pending = pending;
+        }
+
+        @Override
+        int weight() {
+            return weight;
+        }
+
+        @Override
+        boolean push() {
+            if (slots == 0) return true;
+            slots--;
+            pending--;
+            dispatched++;
+            order.append(name);
+            return pending == 0;
+        }
+
+        @Override
+        boolean pending() {
+            return pending > 0;
+        }
+    }
+
+    @Test
+    public void weighted() {
+        final Rotation<Member> rotation = new Rotation<>();
+        rotation.offer(new Member("a", 3, 6));
+        rotation.offer(new Member("b", 1, 6));
+        assertFalse(rotation.round());
+        assertEquals("aaab", order.toString());
+        assertFalse(rotation.round());
+        assertEquals("aaabaaab", order.toString());
+    }
+
+    /**
+     * 名额不足时保留位置和差额，下一轮先用完差额。
+     */
+    @Test
+    public void keepsPlaceAndDeficitWhenFull() {
+        final Rotation<Member> rotation = new Rotation<>();
+        rotation.offer(new Member("a", 3, 6));
+        rotation.offer(new Member("b", 1, 6));
+        slots = 2;
+        assertTrue(rotation.round());
+        assertEquals("aa", order.toString());
+        slots = 2;
+        assertFalse(rotation.round());
+        assertEquals("aaab", order.toString());
+    }
+
+    /**
+     * 没有待处理任务的离开环，差额清零。
+     */
+    @Test
+    public void idleLeaves() {
+        final Rotation<Member> rotation = new Rotation<>();
+        final Member a = new Member("a", 3, 1);
+        rotation.offer(a);
+        assertTrue(rotation.round());
+        assertEquals(0, a.deficit);
+        assertFalse(a.ready.get());
+        assertTrue(rotation.round());
+        assertEquals("a", order.toString());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 同一个文件上的两个{@link SharedCounter}模拟两个进程。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class SharedCounterTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("shared", ".counter");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void sharedLimit() throws IOException {
+        final SharedCounter a = new SharedCounter(file, 2), b = new SharedCounter(file, 2);
+        assertTrue(a.acquire());
+        assertTrue(b.acquire());
+        assertFalse(a.acquire());
+        assertFalse(b.acquire());
+        a.release();
+        assertTrue(b.acquire());
+        b.close();
+        assertTrue(a.acquire());
+        assertTrue(a.acquire());
+        a.close();
+    }
+
+    /**
+     * 停顿过久而被误收回之后，先重新登记并补回仍占用的名额，不能少计，也不能改写别人的租约。
+     */
+    @Test
+    public void reclaimedLeaseIsReRegistered() throws IOException {
+        final SharedCounter a = new SharedCounter(file, 2, 1, TimeUnit.HOURS);
+        assertTrue(a.acquire());
+        assertTrue(a.acquire());
+        final SharedCounter b = new SharedCounter(file, 2, 1, TimeUnit.HOURS);
+        expireFirstLease();
+        assertTrue("收回了a的名额", b.acquire());
+        final SharedCounter c = new SharedCounter(file, 2, 1, TimeUnit.HOURS); // 登记到a原来的位置
+        a.release(); // a仍占着一个
+        assertFalse("a重新登记并补回之后，已占满", b.acquire());
+        assertFalse(c.acquire());
+        a.release();
+        assertTrue(c.acquire());
+        assertFalse(b.acquire());
+        c.close();
+        b.close();
+        assertTrue("c的租约没有被a改写", a.acquire());
+        assertTrue(a.acquire());
+        a.close();
+    }
+
+    /**
+     * 把第一项租约的续约时间改为很久以前，如同其进程已停顿了很久。
+     */
+    private void expireFirstLease() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            final MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 128);
+            buffer.order(ByteOrder.nativeOrder());
+            buffer.putLong(64 + 8, 0);
+        }
+    }
+
+    /**
+     * 被中断的线程也能照常退回名额，且不会因通道被关闭而失效。
+     */
+    @Test
+    public void interruptedRelease() throws IOException {
+        final SharedCounter a = new SharedCounter(file, 1);
+        assertTrue(a.acquire());
+        Thread.currentThread().interrupt();
+        a.release();
+        assertTrue(Thread.interrupted());
+        assertTrue(a.acquire());
+        a.close();
+    }
+
+    /**
+     * 关闭时连同打开的文件一起关闭，反复创建、关闭不泄漏文件描述符。
+     */
+    @Test
+    public void closeReleasesFile() throws IOException {
+        final File fds = new File("/proc/self/fd");
+        if (!fds.isDirectory()) return;
+        final int before = fds.list().length;
+        for (int i = 0; i < 20; i++) {
+            final SharedCounter a = new SharedCounter(file, 1);
+            assertTrue(a.acquire());
+            a.release();
+            a.close();
+        }
+        assertTrue(before + " -> " + fds.list().length, fds.list().length <= before + 2);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link SorterIntR}与<code>{@link SorterR}&lt;{@link IntD}&gt;</code>在同一随机操作序列下的结果应完全一致。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class SorterIntRTest {
+    private static Range<IntD> range(Random random) {
+        final int from = random.nextInt(200) - 20;
+        return new Range<>(IntD.of(from), IntD.of(from + random.nextInt(random.nextInt(4) == 0 ? 60 : 6)));
+    }
+
+    @Test
+    public void sameTrace() {
+        final Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            final SorterR<IntD> expected = new SorterR<>();
+            final SorterIntR actual = new SorterIntR();
+            for (int step = 0; step < 200; step++) {
+                final Range<IntD> r = range(random);
+                final String at = "round " + round + ", step " + step + ", " + r;
+                switch (random.nextInt(8)) {
+                    case 0:
+                    case 1:
+                        expected.put(r);
+                        actual.put(r);
+                        break;
+                    case 2:
+                        assertEquals(at, expected.drop(r), actual.drop(r));
+                        break;
+                    case 3: {
+                        final List<Range<IntD>> e = new ArrayList<>(), a = new ArrayList<>();
+                        expected.intersect(r, e);
+                        actual.intersect(r, a);
+                        assertEquals(at, e.toString(), a.toString());
+                        break;
+                    }
+                    case 4: {
+                        final List<Range<IntD>> e = new ArrayList<>(), a = new ArrayList<>();
+                        assertEquals(at, expected.subtract(r, e), actual.subtract(r, a));
+                        assertEquals(at, e.toString(), a.toString());
+                        break;
+                    }
+                    case 5:
+                        assertEquals(at, expected.overlap(r.from, r.to), actual.overlap(r.from, r.to));
+                        assertEquals(at, expected.contains(r), actual.contains(r));
+                        break;
+                    case 6: {
+                        final int limit = 1 + random.nextInt(10);
+                        final boolean minFirst = random.nextBoolean();
+                        assertEquals(at, String.valueOf(expected.takeSerial(r.from, limit, minFirst)),
+                                String.valueOf(actual.takeSerial(r.from, limit, minFirst)));
+                        break;
+                    }
+                    default: {
+                        final int limit = 1 + random.nextInt(30);
+                        final boolean minFirst = random.nextBoolean();
+                        assertEquals(at, expected.takeMore(r.from, limit, minFirst).toString(),
+                                actual.takeMore(r.from, limit, minFirst).toString());
+                        break;
+                    }
+                }
+                assertEquals(at, expected.hasMore(), actual.hasMore());
+                assertEquals(at, expected.getMore(null, Integer.MAX_VALUE, true).toString(),
+                        actual.getMore(null, Integer.MAX_VALUE, true).toString());
+            }
+        }
+    }
+
+    /**
+     * 输出缓冲不够时返回全部的个数，以便调用者扩容重试。
+     */
+    @Test
+    public void partsBeyondBuffer() {
+        final SorterInt sorter = new SorterInt();
+        for (int i = 0; i < 10; i++) sorter.put(i * 10, i * 10 + 4);
+        final long[] out = new long[2];
+        assertEquals(10, sorter.intersect(0, 99, out));
+        assertEquals(SorterInt.range(0, 4), out[0]);
+        assertEquals(SorterInt.range(10, 14), out[1]);
+        assertEquals(10, sorter.subtract(0, 99, out));
+        assertEquals(SorterInt.range(5, 9), out[0]);
+        assertEquals(-1, sorter.subtract(5, 9, out));
+        final List<Range<IntD>> parts = new ArrayList<>();
+        final SorterIntR r = new SorterIntR();
+        for (int i = 0; i < 10; i++) r.put(IntD.of(i * 10), IntD.of(i * 10 + 4));
+        r.intersect(new Range<>(IntD.of(0), IntD.of(99)), parts);
+        assertEquals(10, parts.size());
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * {@link AbsThrottle#submit(AbsSorter.AbsR, Object, boolean) submit}的结果：切分、合并、分发，以及挤出、丢弃和失败。
+ * 结果为范围内各数之和，切分即求子范围的和。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class SubmitTest {
+    private final List<Range<Num>> ranges = new ArrayList<>();
+    private final List<Completion<Long>> completions = new ArrayList<>();
+    private volatile Runnable onSlice;
+
+    private final ThrottleR.ResultExecutor<Num, String, Long> executor = new ThrottleR.ResultExecutor<Num, String, Long>() {
+        @Override
+        protected void execAsync(Range<Num> range, String tag, Completion<Long> completion) {
+            ranges.add(range);
+            completions.add(completion);
+        }
+
+        @Override
+        protected void cancel(Range<Num> range, String tag) {
+        }
+
+        @Override
+        protected Long slice(Long result, Range<Num> range, Range<Num> part) {
+            final Runnable r = onSlice;
+            if (r != null) r.run();
+            return sum(part);
+        }
+
+        @Override
+        protected Long join(Range<Num> range, List<Range<Num>> parts, List<Long> results) {
+            long sum = 0;
+            for (Long v : results) sum += v;
+            return sum;
+        }
+    };
+
+    private static long sum(Range<Num> r) {
+        long sum = 0;
+        for (int i = r.from.n; i <= r.to.n; i++) sum += i;
+        return sum;
+    }
+
+    private void complete(int i) {
+        completions.get(i).complete(sum(ranges.get(i)));
+    }
+
+    /**
+     * 一个范围的结果分发给多个submit, 一个submit的结果由多次执行合并而成。
+     */
+    @Test(timeout = 10000)
+    public void fanOutAndJoin() throws Exception {
+        final ThrottleR<Num, String> throttle = new ThrottleR<>(new Counter(1), 100, true, executor);
+        final CompletableFuture<Long> a = throttle.submit(Num.range(1, 5), "t", true);
+        final CompletableFuture<Long> b = throttle.submit(Num.range(3, 8), "t", true);
+        assertEquals("[[1, 5]]", ranges.toString());
+        complete(0);
+        assertEquals(15L, (long) a.get());
+        assertFalse(b.isDone());
+        assertEquals("[[1, 5], [6, 8]]", ranges.toString()); // 3~5已在执行，只派发余下的
+        complete(1);
+        assertEquals(33L, (long) b.get());
+        throttle.destroy(false);
+    }
+
+    /**
+     * 同{@link #fanOutAndJoin()}, 经由{@link ThrottleInt.ResultExecutor}的<code>int</code>端点和打包的各部分。
+     */
+    @Test(timeout = 10000)
+    public void intFanOutAndJoin() throws Exception {
+        final List<long[]> joined = new ArrayList<>();
+        final ThrottleInt<String> throttle = new ThrottleInt<>(new Counter(1), 100, true, new ThrottleInt.ResultExecutor<String, Long>() {
+            @Override
+            protected void execAsync(int from, int to, String tag, Completion<Long> completion) {
+                ranges.add(Num.range(from, to));
+                completions.add(completion);
+            }
+
+            @Override
+            protected void cancel(int from, int to, String tag) {
+            }
+
+            @Override
+            protected Long slice(Long result, int from, int to, int partFrom, int partTo) {
+                return sum(Num.range(partFrom, partTo));
+            }
+
+            @Override
+            protected Long join(int from, int to, long[] parts, List<Long> results) {
+                joined.add(parts);
+                long sum = 0;
+                for (Long v : results) sum += v;
+                return sum;
+            }
+        });
+        final CompletableFuture<Long> a = throttle.submit(1, 5, "t", true);
+        final CompletableFuture<Long> b = throttle.submit(3, 8, "t", true);
+        complete(0);
+        assertEquals(15L, (long) a.get());
+        assertEquals("[[1, 5], [6, 8]]", ranges.toString());
+        complete(1);
+        assertEquals(33L, (long) b.get());
+        assertEquals(1, joined.size());
+        assertEquals(SorterInt.range(3, 5), joined.get(0)[0]);
+        assertEquals(SorterInt.range(6, 8), joined.get(0)[1]);
+        throttle.destroy(false);
+    }
+
+    /**
+     * 切分与合并是调用方的代码，不能在持有控制器的锁时执行。
+     */
+    @Test(timeout = 10000)
+    public void sliceOutsideLock() throws Exception {
+        final ThrottleR<Num, String> throttle = new ThrottleR<>(new Counter(1), 100, true, executor);
+        final CompletableFuture<Long> a = throttle.submit(Num.range(1, 5), "t", true);
+        final boolean[] blocked = {false};
+        onSlice = new Runnable() {
+            @Override
+            public void run() {
+                final Thread t = new Thread() {
+                    @Override
+                    public void run() {
+                        throttle.drop(Num.range(50, 50), "t", true);
+                    }
+                };
+                t.start();
+                try {
+                    t.join(1000);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                blocked[0] = t.isAlive();
+            }
+        };
+        complete(0);
+        assertEquals(15L, (long) a.get());
+        assertFalse(blocked[0]);
+        throttle.destroy(false);
+    }
+
+    @Test(timeout = 10000)
+    public void dropAndCancel() throws Exception {
+        final ThrottleR<Num, String> throttle = new ThrottleR<>(new Counter(1), 100, true, executor);
+        final CompletableFuture<Long> a = throttle.submit(Num.range(1, 5), "t", true);
+        final CompletableFuture<Long> b = throttle.submit(Num.range(20, 30), "t", true);
+        throttle.drop(Num.range(20, 30), "t", true);
+        assertCause(CancellationException.class, b);
+        throttle.cancel(Num.range(1, 5), "t", true);
+        assertCause(CancellationException.class, a);
+        throttle.destroy(false);
+    }
+
+    /**
+     * 非promised的范围超出满载队列时被挤出局，等待它的submit以取消结束；总是优先最后的输入。
+     */
+    @Test(timeout = 10000)
+    public void eviction() throws Exception {
+        final ThrottleR<Num, String> throttle = new ThrottleR<>(new Counter(1), 100, true, executor);
+        final CompletableFuture<Long> a = throttle.submit(Num.range(1, 5), "t", false);
+        final CompletableFuture<Long> b = throttle.submit(Num.range(10, 15), "t", false);
+        final CompletableFuture<Long> c = throttle.submit(Num.range(20, 25), "t", false);
+        final CompletableFuture<Long> d = throttle.submit(Num.range(30, 35), "t", false);
+        complete(0);
+        assertEquals(15L, (long) a.get());
+        assertCause(CancellationException.class, b);
+        assertCause(CancellationException.class, c);
+        assertEquals("[[1, 5], [30, 35]]", ranges.toString());
+        complete(1);
+        assertEquals(195L, (long) d.get());
+        throttle.destroy(false);
+    }
+
+    @Test(timeout = 10000)
+    public void failure() throws Exception {
+        final ThrottleR<Num, String> throttle = new ThrottleR<>(new Counter(1), 100, true, executor);
+        final CompletableFuture<Long> a = throttle.submit(Num.range(1, 5), "t", true);
+        final IllegalStateException e = new IllegalStateException("boom");
+        completions.get(0).fail(e);
+        assertSame(e, assertCause(IllegalStateException.class, a));
+        throttle.destroy(false);
+    }
+
+    @Test(timeout = 10000)
+    public void sliceFailure() throws Exception {
+        final ThrottleR<Num, String> throttle = new ThrottleR<>(new Counter(1), 100, true, executor);
+        final CompletableFuture<Long> a = throttle.submit(Num.range(1, 5), "t", true);
+        onSlice = new Runnable() {
+            @Override
+            public void run() {
+                throw new ArithmeticException();
+            }
+        };
+        complete(0);
+        assertCause(ArithmeticException.class, a);
+        throttle.destroy(false);
+    }
+
+    private static Throwable assertCause(Class<? extends Throwable> type, CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (CancellationException e) {
+            assertTrue(type.isInstance(e));
+            return e;
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), type.isInstance(e.getCause()));
+            return e.getCause();
+        }
+        fail("没有以异常结束");
+        return null;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package hobby.wei.c.tool.throttle;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 闲置的分类对象被释放时，与并发的输入之间的竞争。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class TaggedReleaseTest {
+    private static final int THREADS = 8, ROUNDS = 10000;
+
+    /**
+     * 执行者同步完成，每个输入之后分类都立即闲置而被释放，与其它线程的{@code getTagged()}竞争。
+     */
+    @Test(timeout = 60000)
+    public void putWhileIdleTaggedReleased() throws Exception {
+        final Counter counter = new Counter(THREADS);
+        final ThrottleInt<String> throttle = new ThrottleInt<>(counter, 1, true, new ThrottleInt.Executor<String>() {
+            @Override
+            protected void execAsync(int from, int to, String tag, Runnable onDone) {
+                onDone.run();
+            }
+
+            @Override
+            protected void cancel(int from, int to, String tag) {
+            }
+        });
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1), end = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            final int id = t;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < ROUNDS && error.get() == null; i++) {
+                            throttle.put(i, (i & 1) == 0 ? null : "tag" + (id & 1), true);
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    } finally {
+                        end.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        end.await();
+        assertNull(String.valueOf(error.get()), error.get());
+        assertEquals(0, counter.count());
+        throttle.destroy(false);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016-present, Wei Chou(weichou2010@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package hobby.wei.c.tool.throttle;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 现成的任务执行者（{@link Tasks}）的失败、超时和取消。
+ *
+ * @author Wei Chou(weichou2010@gmail.com)
+ * @version 1.0, 17/10/2026
+ */
+public class TasksTest {
+    private final ExecutorService service = Executors.newCachedThreadPool();
+    private final BlockingQueue<Boolean> completes = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Throwable> failures = new LinkedBlockingQueue<>();
+    private final ThrottleListener<String> listener = new ThrottleListener.Adapter<String>() {
+        @Override
+        public void onComplete(String tag, long execNanos, boolean success) {
+            completes.add(success);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        service.shutdownNow();
+    }
+
+    /**
+     * 失败的任务不能被当作成功：不记入新鲜期，再次输入会重新执行。
+     */
+    @Test(timeout = 10000)
+    public void serviceFailureIsNotSuccess() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        final ThrottleInt<String> throttle = new ThrottleInt<>(new Counter(2), 10, true, new ThrottleInt.ServiceExecutor<String>(service) {
+            @Override
+            protected void run(int from, int to, String tag) throws Exception {
+                if (runs.incrementAndGet() == 1) throw new IllegalStateException("boom");
+            }
+
+            @Override
+            protected void onFailed(int from, int to, String tag, Throwable e) {
+                failures.add(e);
+            }
+        });
+        throttle.setFreshness(1, TimeUnit.MINUTES);
+        throttle.setListener(listener);
+        throttle.put(1, 5, "t", false);
+        assertEquals(Boolean.FALSE, completes.take());
+        assertTrue(failures.take() instanceof IllegalStateException);
+        throttle.put(1, 5, "t", false);
+        assertEquals(Boolean.TRUE, completes.take());
+        assertEquals(2, runs.get());
+        throttle.put(1, 5, "t", false); // 成功之后在新鲜期内，不再执行。
+        Thread.sleep(100);
+        assertEquals(2, runs.get());
+        throttle.destroy(false);
+    }
+
+    @Test(timeout = 10000)
+    public void futureTimeoutIsFailure() throws Exception {
+        final ThrottleInt<String> throttle = new ThrottleInt<>(new Counter(2), 10, true, new ThrottleInt.FutureExecutor<String>(50, TimeUnit.MILLISECONDS) {
+            @Override
+            protected CompletableFuture<?> supply(int from, int to, String tag) {
+                return new CompletableFuture<>(); // 永不完成
+            }
+
+            @Override
+            protected void onFailed(int from, int to, String tag, Throwable e) {
+                failures.add(e);
+            }
+        });
+        throttle.setListener(listener);
+        throttle.put(1, 5, "t", true);
+        assertEquals(Boolean.FALSE, completes.take());
+        assertTrue(failures.take() instanceof TimeoutException);
+        throttle.destroy(false);
+    }
+}